@@ -0,0 +1,121 @@
+package org.bodhi.fbc.bench;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.bodhi.fbc.BinaryReader;
+import org.bodhi.fbc.CodecPool;
+import org.bodhi.fbc.TraceMode;
+import org.bodhi.fbc.TraceSampler;
+import org.bodhi.fbc.impl.StringCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Decodes a whole message, comparing the named (traced) and unnamed overloads in each TraceMode.
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinaryReaderBenchmark {
+    private static final Charset CHARSET = StandardCharsets.ISO_8859_1;
+
+    @Param({"64", "1024", "65536"})
+    public int size;
+
+    @Param({"FULL", "LABELS_ONLY", "OFF"})
+    public TraceMode mode;
+
+    private byte[] m_message;
+    private byte[] m_text;
+    private String[] m_intNames;
+    private String[] m_stringNames;
+    private StringCache m_strings;
+    private CodecPool m_pool;
+    private BinaryReader m_reader;
+    private TraceSampler m_sampler;
+
+    @Setup
+    public void setup() {
+        m_message = Messages.random(size);
+        m_text = Messages.text(size);
+        m_intNames = Messages.names("int", size / 4);
+        m_stringNames = Messages.names("str", size / Messages.STRING_LENGTH);
+        m_strings = new StringCache(1024);
+        m_pool = new CodecPool(CHARSET, mode);
+        m_reader = new BinaryReader(new byte[0], CHARSET, mode);
+        m_sampler = new TraceSampler(1000, sample -> { });
+    }
+
+    @Benchmark
+    public void getInt4(Blackhole bh) throws IOException {
+        BinaryReader reader = new BinaryReader(m_message, CHARSET, mode);
+        for (int ii=0; ii<m_intNames.length; ii++) {
+            bh.consume(reader.getInt4());
+        }
+    }
+
+    @Benchmark
+    public void getInt4Named(Blackhole bh) throws IOException {
+        BinaryReader reader = new BinaryReader(m_message, CHARSET, mode);
+        for (String name : m_intNames) {
+            bh.consume(reader.getInt4(name));
+        }
+    }
+
+    // Same as getInt4Named with the reader reset from a pool instead of constructed.
+
+    @Benchmark
+    public void getInt4Pooled(Blackhole bh) throws IOException {
+        BinaryReader reader = m_pool.reader(m_message);
+        for (String name : m_intNames) {
+            bh.consume(reader.getInt4(name));
+        }
+    }
+
+    // Same as getInt4Pooled through a sampler that traces one message in 1000 in FULL.
+
+    @Benchmark
+    public long getInt4Sampled() throws IOException {
+        return m_sampler.decode(m_reader, m_message, reader -> {
+            long sum = 0;
+            for (String name : m_intNames) {
+                sum += reader.getInt4(name);
+            }
+            return sum;
+        });
+    }
+
+    @Benchmark
+    public void getString(Blackhole bh) {
+        BinaryReader reader = new BinaryReader(m_text, CHARSET, mode);
+        for (String name : m_stringNames) {
+            bh.consume(reader.getString(Messages.STRING_LENGTH, name));
+        }
+    }
+
+    // Strings start 12 bytes apart in an A-Z cycle, so there are 13 distinct values and they
+    // hit the cache after the first invocation.
+
+    @Benchmark
+    public void getStringCached(Blackhole bh) {
+        BinaryReader reader = new BinaryReader(m_text, CHARSET, mode);
+        reader.setStringCache(m_strings);
+        for (String name : m_stringNames) {
+            bh.consume(reader.getString(Messages.STRING_LENGTH, name));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.bodhi.fbc.bench;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.bodhi.fbc.BinaryWriter;
+import org.bodhi.fbc.TraceMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Encodes a whole message, comparing the named (traced) and unnamed overloads in each TraceMode.
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinaryWriterBenchmark {
+    private static final Charset CHARSET = StandardCharsets.ISO_8859_1;
+
+    @Param({"64", "1024", "65536"})
+    public int size;
+
+    @Param({"FULL", "LABELS_ONLY", "OFF"})
+    public TraceMode mode;
+
+    private String[] m_intNames;
+    private String[] m_stringNames;
+    private String[] m_strings;
+
+    @Setup
+    public void setup() {
+        m_intNames = Messages.names("int", size / 4);
+        m_stringNames = Messages.names("str", size / Messages.STRING_LENGTH);
+        m_strings = Messages.strings(m_stringNames.length);
+    }
+
+    @Benchmark
+    public BinaryWriter putInt4() {
+        BinaryWriter writer = new BinaryWriter(size, CHARSET, mode);
+        for (int ii=0; ii<m_intNames.length; ii++) {
+            writer.putInt4(ii);
+        }
+        return writer;
+    }
+
+    @Benchmark
+    public BinaryWriter putInt4Named() {
+        BinaryWriter writer = new BinaryWriter(size, CHARSET, mode);
+        for (int ii=0; ii<m_intNames.length; ii++) {
+            writer.putInt4(ii, m_intNames[ii]);
+        }
+        return writer;
+    }
+
+    @Benchmark
+    public BinaryWriter putString() {
+        BinaryWriter writer = new BinaryWriter(size, CHARSET, mode);
+        for (int ii=0; ii<m_strings.length; ii++) {
+            writer.putString(m_strings[ii], Messages.STRING_LENGTH, m_stringNames[ii]);
+        }
+        return writer;
+    }
+}
@@ -0,0 +1,123 @@
+package org.bodhi.fbc.bench;
+
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+import org.bodhi.fbc.impl.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Reads or writes a whole message of the given size through Buffer, in either byte order.
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BufferBenchmark {
+
+    @Param({"64", "1024", "65536"})
+    public int size;
+
+    @Param({"BIG", "LITTLE"})
+    public String order;
+
+    private byte[] m_message;
+    private ByteOrder m_order;
+    private int[] m_ints;
+
+    @Setup
+    public void setup() {
+        m_message = Messages.random(size);
+        m_order = "BIG".equals(order) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        m_ints = new int[size / 4];
+    }
+
+    @Benchmark
+    public void getInt2(Blackhole bh) {
+        Buffer buffer = new Buffer(m_message, m_order);
+        for (int ii=0; ii<size / 2; ii++) {
+            bh.consume(buffer.getInt2());
+        }
+    }
+
+    @Benchmark
+    public void getInt4(Blackhole bh) {
+        Buffer buffer = new Buffer(m_message, m_order);
+        for (int ii=0; ii<size / 4; ii++) {
+            bh.consume(buffer.getInt4());
+        }
+    }
+
+    // An int32_t array, element by element and in bulk.
+
+    @Benchmark
+    public int[] getInt4Array() {
+        Buffer buffer = new Buffer(m_message, m_order);
+        for (int ii=0; ii<m_ints.length; ii++) {
+            m_ints[ii] = buffer.getInt4();
+        }
+        return m_ints;
+    }
+
+    @Benchmark
+    public int[] getInt4s() {
+        Buffer buffer = new Buffer(m_message, m_order);
+        buffer.getInt4s(m_ints, 0, m_ints.length);
+        return m_ints;
+    }
+
+    @Benchmark
+    public void getInt8(Blackhole bh) {
+        Buffer buffer = new Buffer(m_message, m_order);
+        for (int ii=0; ii<size / 8; ii++) {
+            bh.consume(buffer.getInt8());
+        }
+    }
+
+    @Benchmark
+    public Buffer putInt2() {
+        Buffer buffer = new Buffer(size, Buffer.MAX_CAPACITY, m_order);
+        for (int ii=0; ii<size / 2; ii++) {
+            buffer.putInt2(ii);
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public Buffer putInt4() {
+        Buffer buffer = new Buffer(size, Buffer.MAX_CAPACITY, m_order);
+        for (int ii=0; ii<size / 4; ii++) {
+            buffer.putInt4(ii);
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public Buffer putInt8() {
+        Buffer buffer = new Buffer(size, Buffer.MAX_CAPACITY, m_order);
+        for (int ii=0; ii<size / 8; ii++) {
+            buffer.putInt8(ii);
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public Buffer putInt4Growing() {
+        Buffer buffer = new Buffer(32, Buffer.MAX_CAPACITY, m_order);
+        for (int ii=0; ii<size / 4; ii++) {
+            buffer.putInt4(ii);
+        }
+        return buffer;
+    }
+}
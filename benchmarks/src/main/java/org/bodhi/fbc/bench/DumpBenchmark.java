@@ -0,0 +1,77 @@
+package org.bodhi.fbc.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.bodhi.fbc.BinaryDiff;
+import org.bodhi.fbc.HexDump;
+import org.bodhi.fbc.Trace;
+import org.bodhi.fbc.Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Renders a traced message with Utils.toString, one field every four bytes, and streams it
+// through HexDump to a Writer that discards it. The diffs compare it with a copy that differs
+// in one byte, rendering every byte or only the region with BinaryDiff.
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DumpBenchmark {
+
+    @Param({"64", "1024", "65536"})
+    public int size;
+
+    private byte[] m_message;
+    private byte[] m_golden;
+    private Trace m_trace;
+    private HexDump m_dump;
+    private final Writer m_sink = Writer.nullWriter();
+
+    @Setup
+    public void setup() {
+        m_message = Messages.random(size);
+        m_trace = new Trace();
+
+        String[] names = Messages.names("int", size / 4);
+        for (int ii=0; ii<names.length; ii++) {
+            m_trace.trace(ii * 4, names[ii], "// SInt4");
+        }
+        m_dump = new HexDump(m_trace);
+
+        m_golden = m_message.clone();
+        m_golden[size / 2] ^= 1;
+    }
+
+    @Benchmark
+    public String toStringTrace() {
+        return Utils.toString(m_trace, m_message);
+    }
+
+    @Benchmark
+    public void dumpToWriter() throws IOException {
+        m_dump.dump(m_message, m_sink);
+    }
+
+    @Benchmark
+    public String diffAll() {
+        return Utils.toString(m_trace, m_message, m_golden);
+    }
+
+    @Benchmark
+    public String diffRegions() {
+        return new BinaryDiff(16).toString(m_trace, m_message, m_golden);
+    }
+}
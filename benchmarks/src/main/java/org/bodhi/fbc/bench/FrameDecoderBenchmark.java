@@ -0,0 +1,79 @@
+package org.bodhi.fbc.bench;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.bodhi.fbc.BinaryReader;
+import org.bodhi.fbc.BinaryWriter;
+import org.bodhi.fbc.FrameDecoder;
+import org.bodhi.fbc.TraceMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Walks a buffer of Int4 length prefixed frames, by hand with a BinaryReader and with a
+// FrameDecoder, reading the first Int4 of every payload.
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameDecoderBenchmark {
+    private static final Charset CHARSET = StandardCharsets.ISO_8859_1;
+
+    @Param({"1000"})
+    public int frames;
+
+    private byte[] m_bytes;
+    private FrameDecoder m_decoder;
+    private Blackhole m_bh;
+    private final FrameDecoder.Handler m_handler = batch -> {
+        for (int ii=0; ii<batch.size(); ii++) {
+            m_bh.consume(batch.getBuffer().getInt4(batch.getOffset(ii)));
+        }
+    };
+
+    @Setup
+    public void setup(Blackhole bh) {
+        BinaryWriter writer = new BinaryWriter(CHARSET, TraceMode.OFF);
+        for (int ii=0; ii<frames; ii++) {
+            int length = 8 + ii % 32;
+            writer.putInt4(length);
+            writer.putInt4(ii);
+            writer.putBytes(new byte[length - 4], "body");
+        }
+        m_bytes = writer.getBytes();
+        m_decoder = new FrameDecoder(FrameDecoder.Prefix.INT4, ByteOrder.BIG_ENDIAN, false);
+        m_bh = bh;
+    }
+
+    @Benchmark
+    public void byHand(Blackhole bh) throws IOException {
+        BinaryReader reader = new BinaryReader(m_bytes, CHARSET, TraceMode.OFF);
+        int pos = 0;
+        while (pos < m_bytes.length) {
+            reader.moveToPosition(pos);
+            int length = reader.getInt4();
+            bh.consume(reader.getInt4());
+            pos += 4 + length;
+        }
+    }
+
+    @Benchmark
+    public int frameDecoder() throws IOException {
+        return m_decoder.decode(m_bytes, 0, m_bytes.length, m_handler);
+    }
+}
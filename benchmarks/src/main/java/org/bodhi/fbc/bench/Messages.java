@@ -0,0 +1,41 @@
+package org.bodhi.fbc.bench;
+
+import java.util.Random;
+
+// Shared fixtures so every benchmark decodes the same kind of data.
+
+final class Messages {
+    static final int STRING_LENGTH = 12;
+
+    private Messages() { }
+
+    static byte[] random(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    static byte[] text(int size) {
+        byte[] bytes = new byte[size];
+        for (int ii=0; ii<size; ii++) {
+            bytes[ii] = (byte) ('A' + ii % 26);
+        }
+        return bytes;
+    }
+
+    static String[] names(String prefix, int count) {
+        String[] names = new String[count];
+        for (int ii=0; ii<count; ii++) {
+            names[ii] = prefix + ii;
+        }
+        return names;
+    }
+
+    static String[] strings(int count) {
+        String[] strings = new String[count];
+        for (int ii=0; ii<count; ii++) {
+            strings[ii] = "SYM" + ii;
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,75 @@
+package org.bodhi.fbc.bench;
+
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.bodhi.fbc.BinaryReader;
+import org.bodhi.fbc.BinaryWriter;
+import org.bodhi.fbc.RecordSpliterator;
+import org.bodhi.fbc.TraceMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Sums a field over a capture of fixed size records, on one thread with one reader and in
+// parallel through RecordSpliterator. Run with -p records=... to size the capture.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordSpliteratorBenchmark {
+    private static final Charset CHARSET = StandardCharsets.ISO_8859_1;
+    private static final int RECORD_SIZE = 32;
+
+    @Param({"1000000"})
+    public int records;
+
+    private byte[] m_bytes;
+
+    @Setup
+    public void setup() {
+        BinaryWriter writer = new BinaryWriter(records * RECORD_SIZE, CHARSET, TraceMode.OFF);
+        for (int ii=0; ii<records; ii++) {
+            writer.putInt4(ii);
+            writer.putInt8(ii * 3L);
+            writer.putString("SYM" + (ii % 100), 20);
+        }
+        m_bytes = writer.getBytes();
+    }
+
+    @Benchmark
+    public long sequential() throws Exception {
+        BinaryReader reader = new BinaryReader(m_bytes, CHARSET, TraceMode.OFF);
+        long sum = 0;
+        for (int ii=0; ii<records; ii++) {
+            sum += decode(reader);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long parallel() {
+        return RecordSpliterator.fixed(m_bytes, RECORD_SIZE, ByteOrder.BIG_ENDIAN, CHARSET, TraceMode.OFF,
+                                       RecordSpliteratorBenchmark::decode, false)
+                                .mapToLong(Long::longValue)
+                                .sum();
+    }
+
+    private static Long decode(BinaryReader reader) throws java.io.IOException {
+        int id = reader.getInt4("id");
+        long value = reader.getInt8("value");
+        return id + value + reader.getString(20, "symbol").length();
+    }
+}
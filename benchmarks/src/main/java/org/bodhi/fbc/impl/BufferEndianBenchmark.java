@@ -0,0 +1,95 @@
+package org.bodhi.fbc.impl;
+
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Byte by byte versus VarHandle Endian implementations, measured through Buffer. Every
+// parameter combination runs in its own fork, so setup can pick the family with the
+// org.bodhi.fbc.endian property before Endian is loaded, and each fork sees one Endian.
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BufferEndianBenchmark {
+
+    @Param({"BYTES", "VARHANDLE"})
+    public String impl;
+
+    @Param({"BIG", "LITTLE"})
+    public String order;
+
+    @Param({"1024", "65536"})
+    public int size;
+
+    private Buffer m_buffer;
+
+    @Setup
+    public void setup() {
+        boolean bytes = "BYTES".equals(impl);
+        System.setProperty("org.bodhi.fbc.endian", bytes ? "bytes" : "varhandles");
+        if (Endian.VAR_HANDLES == bytes)
+            throw new IllegalStateException("Endian was loaded before setup, run with forks");
+
+        byte[] message = new byte[size];
+        new Random(42).nextBytes(message);
+        m_buffer = new Buffer(message, "BIG".equals(order) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Benchmark
+    public void getInt2(Blackhole bh) {
+        m_buffer.setPosition(0);
+        for (int ii=0; ii<size / 2; ii++) {
+            bh.consume(m_buffer.getInt2());
+        }
+    }
+
+    @Benchmark
+    public void getInt4(Blackhole bh) {
+        m_buffer.setPosition(0);
+        for (int ii=0; ii<size / 4; ii++) {
+            bh.consume(m_buffer.getInt4());
+        }
+    }
+
+    @Benchmark
+    public void getInt8(Blackhole bh) {
+        m_buffer.setPosition(0);
+        for (int ii=0; ii<size / 8; ii++) {
+            bh.consume(m_buffer.getInt8());
+        }
+    }
+
+    @Benchmark
+    public Buffer putInt4() {
+        m_buffer.setPosition(0);
+        for (int ii=0; ii<size / 4; ii++) {
+            m_buffer.putInt4(ii);
+        }
+        return m_buffer;
+    }
+
+    @Benchmark
+    public Buffer putInt8() {
+        m_buffer.setPosition(0);
+        for (int ii=0; ii<size / 8; ii++) {
+            m_buffer.putInt8(ii);
+        }
+        return m_buffer;
+    }
+}
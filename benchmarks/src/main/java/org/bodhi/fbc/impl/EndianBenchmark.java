@@ -0,0 +1,88 @@
+package org.bodhi.fbc.impl;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Lives in the impl package because the Endian primitives are package private.
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EndianBenchmark {
+
+    @Param({"BIG", "LITTLE"})
+    public String order;
+
+    @Param({"64", "1024", "65536"})
+    public int size;
+
+    private Endian m_endian;
+    private byte[] m_message;
+
+    @Setup
+    public void setup() {
+        m_endian = "BIG".equals(order) ? new BigEndian() : new LittleEndian();
+        m_message = new byte[size];
+        new Random(42).nextBytes(m_message);
+    }
+
+    @Benchmark
+    public void getInt2(Blackhole bh) {
+        for (int offset=0; offset + 2 <= size; offset += 2) {
+            bh.consume(m_endian.getInt2(m_message, offset));
+        }
+    }
+
+    @Benchmark
+    public void getInt4(Blackhole bh) {
+        for (int offset=0; offset + 4 <= size; offset += 4) {
+            bh.consume(m_endian.getInt4(m_message, offset));
+        }
+    }
+
+    @Benchmark
+    public void getInt8(Blackhole bh) {
+        for (int offset=0; offset + 8 <= size; offset += 8) {
+            bh.consume(m_endian.getInt8(m_message, offset));
+        }
+    }
+
+    @Benchmark
+    public byte[] putInt2() {
+        for (int offset=0; offset + 2 <= size; offset += 2) {
+            m_endian.putInt2(m_message, offset, offset);
+        }
+        return m_message;
+    }
+
+    @Benchmark
+    public byte[] putInt4() {
+        for (int offset=0; offset + 4 <= size; offset += 4) {
+            m_endian.putInt4(m_message, offset, offset);
+        }
+        return m_message;
+    }
+
+    @Benchmark
+    public byte[] putInt8() {
+        for (int offset=0; offset + 8 <= size; offset += 8) {
+            m_endian.putInt8(m_message, offset, offset);
+        }
+        return m_message;
+    }
+}
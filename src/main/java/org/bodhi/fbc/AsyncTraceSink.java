@@ -0,0 +1,94 @@
+package org.bodhi.fbc;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AsyncTraceSink hands samples to another sink on a background thread. The decoding thread only
+ * offers the sample to a bounded queue and never waits: when the queue is full the sample is
+ * dropped and counted, so a slow sink costs samples rather than throughput.
+ */
+public class AsyncTraceSink implements TraceSink, AutoCloseable {
+    private static final TraceSampler.Sample STOP = new TraceSampler.Sample(null, null, new byte[0], null);
+
+    private final TraceSink m_sink;
+    private final BlockingQueue<TraceSampler.Sample> m_queue;
+    private final AtomicLong m_dropped = new AtomicLong();
+    private final AtomicLong m_failed = new AtomicLong();
+    private final Thread m_thread;
+    private volatile boolean m_closed;
+
+    public AsyncTraceSink(TraceSink sink, int capacity) {
+        m_sink = sink;
+        m_queue = new ArrayBlockingQueue<>(capacity);
+        m_thread = new Thread(this::drain, "trace-sink");
+        m_thread.setDaemon(true);
+        m_thread.start();
+    }
+
+    // A sample offered while the sink closes may land behind STOP, where nothing takes it. It
+    // sees m_closed on the second check and takes itself back, unless the thread got it first.
+
+    public void onTrace(TraceSampler.Sample sample) {
+        if (m_closed || !m_queue.offer(sample))
+            m_dropped.incrementAndGet();
+        else if (m_closed && m_queue.remove(sample))
+            m_dropped.incrementAndGet();
+    }
+
+    // Samples dropped because the queue was full or the sink closed.
+
+    public long getDropped() {
+        return m_dropped.get();
+    }
+
+    // Samples the sink threw on, exceptions and errors alike; they are otherwise ignored.
+
+    public long getFailed() {
+        return m_failed.get();
+    }
+
+    // Stops taking samples, delivers the ones queued and waits for the thread to finish. The
+    // thread is stopped by a marker behind the queued samples, never interrupted, so a sink
+    // writing to a channel is not closed under it.
+
+    public void close() {
+        if (m_closed)
+            return;
+        m_closed = true;
+
+        try {
+            while (!m_queue.offer(STOP, 100, TimeUnit.MILLISECONDS)) {
+                if (!m_thread.isAlive())
+                    return;
+            }
+            m_thread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        try {
+            TraceSampler.Sample sample;
+            while (STOP != (sample = m_queue.take())) {
+                deliver(sample);
+            }
+        }
+        catch (InterruptedException e) {
+            // not interrupted by close, the thread is being torn down from outside
+        }
+    }
+
+    private void deliver(TraceSampler.Sample sample) {
+        try {
+            m_sink.onTrace(sample);
+        }
+        catch (Throwable e) {
+            m_failed.incrementAndGet();     // an Error too, the thread must outlive the sink
+        }
+    }
+}
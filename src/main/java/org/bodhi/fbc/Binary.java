@@ -1,6 +1,21 @@
 package org.bodhi.fbc;
 
+import java.util.Arrays;
+
 public interface Binary {
     byte[] getBytes();
     Trace getTrace();
+
+    // Returns the first offset from from on where getBytes() would differ from expected, or -1
+    // when they are the same. BinaryReader and BinaryWriter compare in place without the copy.
+
+    default int mismatch(byte[] expected, int from) {
+        byte[] bytes = getBytes();
+        int end = Math.min(bytes.length, expected.length);
+        if (from >= end)
+            return (from < Math.max(bytes.length, expected.length)) ? from : -1;
+
+        int n = Arrays.mismatch(bytes, from, bytes.length, expected, from, expected.length);
+        return (n < 0) ? -1 : from + n;
+    }
 }
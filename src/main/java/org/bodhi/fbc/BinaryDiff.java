@@ -0,0 +1,188 @@
+package org.bodhi.fbc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * BinaryDiff finds where a message differs from the expected bytes and reports only those
+ * regions. Differences are located with Arrays.mismatch, in place on a writer's or reader's
+ * buffer, so a matching message costs one pass and no copies. Each region is named after the
+ * traced field it falls in, and is rendered in the layout of Utils.toString with context bytes
+ * either side; the bytes in between are left out.
+ *
+ *   BinaryDiff diff = new BinaryDiff(4);
+ *   if (!diff.compare(writer, golden).isEmpty())
+ *       fail(diff.toString(writer, golden));
+ */
+public class BinaryDiff {
+    public static final String GAP = "     ...";
+
+    private final int m_context;
+
+    public BinaryDiff(int context) {
+        m_context = context;
+    }
+
+    public int getContext() {
+        return m_context;
+    }
+
+    // Returns the differing regions in offset order, empty when the bytes are the same.
+
+    public List<Region> compare(Binary actual, byte[] expected) {
+        return regions(actual.getTrace(), from -> actual.mismatch(expected, from));
+    }
+
+    public List<Region> compare(Trace trace, byte[] actual, byte[] expected) {
+        return regions(trace, from -> mismatch(actual, expected, from));
+    }
+
+    // Renders the header and each region with its context, runs of matching bytes between them
+    // collapse to a "..." line naming the field the next region is in.
+
+    public void render(Trace trace, byte[] actual, byte[] expected, List<Region> regions, Appendable out)
+        throws IOException
+    {
+        HexDump dump = new HexDump(trace);
+        int length = Math.max(actual.length, expected.length);
+        int shown = 0;
+
+        out.append(HexDump.DIFF_HEADER);
+
+        for (int ii=0; ii<regions.size(); ) {
+            Region first = regions.get(ii);
+            int start = Math.max(first.getOffset() - m_context, 0);
+            int end = Math.min(first.getEnd() + m_context, length);
+
+            for (ii++; ii<regions.size() && regions.get(ii).getOffset() - m_context <= end; ii++) {
+                end = Math.min(regions.get(ii).getEnd() + m_context, length);
+            }
+
+            if (start > shown)
+                gap(first, start, out);
+            dump.diff(actual, expected, start, end - start, out);
+            shown = end;
+        }
+
+        if (!regions.isEmpty() && shown < length)
+            out.append(GAP).append('\n');
+    }
+
+    // Returns "" when the bytes are the same. The actual bytes are only copied out of the
+    // Binary when there is a difference to show.
+
+    public String toString(Binary actual, byte[] expected) {
+        List<Region> regions = compare(actual, expected);
+        return regions.isEmpty() ? "" : toString(actual.getTrace(), actual.getBytes(), expected, regions);
+    }
+
+    public String toString(Trace trace, byte[] actual, byte[] expected) {
+        List<Region> regions = compare(trace, actual, expected);
+        return regions.isEmpty() ? "" : toString(trace, actual, expected, regions);
+    }
+
+    private String toString(Trace trace, byte[] actual, byte[] expected, List<Region> regions) {
+        StringBuilder b = new StringBuilder();
+        try {
+            render(trace, actual, expected, regions, b);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);  // StringBuilder does not throw
+        }
+        return b.toString();
+    }
+
+    // A differing byte is followed by another when the next mismatch is the very next offset,
+    // which Arrays.mismatch answers at once, so runs and the gaps between them are each
+    // scanned once.
+
+    private static List<Region> regions(Trace trace, IntUnaryOperator mismatch) {
+        List<Region> regions = new ArrayList<>();
+        int field = -1;
+        int searched = 0;       // trace positions below this have been searched for a field
+
+        int start = mismatch.applyAsInt(0);
+        while (start >= 0) {
+            int end = start + 1;
+            int next = mismatch.applyAsInt(end);
+            while (next == end) {
+                next = mismatch.applyAsInt(++end);
+            }
+
+            for (int ii=start; ii>=searched; ii--) {
+                if (trace.hasField(ii)) {
+                    field = ii;
+                    break;
+                }
+            }
+            searched = start + 1;
+
+            regions.add(new Region(start, end - start, field, (field < 0) ? null : trace.getField(field)));
+            start = next;
+        }
+        return regions;
+    }
+
+    private static int mismatch(byte[] actual, byte[] expected, int from) {
+        int end = Math.min(actual.length, expected.length);
+        if (from >= end)
+            return (from < Math.max(actual.length, expected.length)) ? from : -1;
+
+        int n = Arrays.mismatch(actual, from, actual.length, expected, from, expected.length);
+        return (n < 0) ? -1 : from + n;
+    }
+
+    private static void gap(Region region, int start, Appendable out) throws IOException {
+        out.append(GAP);
+        if (null != region.getField() && region.getFieldPosition() < start)
+            out.append(' ').append(region.getField()).append(" from ").append(Integer.toString(region.getFieldPosition()));
+        out.append('\n');
+    }
+
+    /**
+     * A run of differing bytes. Past the end of the shorter message every byte differs.
+     */
+    public static final class Region {
+        private final int m_offset;
+        private final int m_length;
+        private final int m_fieldPosition;
+        private final String m_field;
+
+        Region(int offset, int length, int fieldPosition, String field) {
+            m_offset = offset;
+            m_length = length;
+            m_fieldPosition = fieldPosition;
+            m_field = field;
+        }
+
+        public int getOffset() {
+            return m_offset;
+        }
+
+        public int getLength() {
+            return m_length;
+        }
+
+        public int getEnd() {
+            return m_offset + m_length;
+        }
+
+        // The traced field at or before the offset, -1 and null when there is none.
+
+        public int getFieldPosition() {
+            return m_fieldPosition;
+        }
+
+        public String getField() {
+            return m_field;
+        }
+
+        public String toString() {
+            return "[" + m_offset + ", " + getEnd() + ")" + ((null == m_field) ? "" : " " + m_field);
+        }
+    }
+}
@@ -2,39 +2,155 @@
 package org.bodhi.fbc;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.bodhi.fbc.impl.BinaryBuffer;
 import org.bodhi.fbc.impl.Buffer;
+import org.bodhi.fbc.impl.NioBuffer;
+import org.bodhi.fbc.impl.StringCache;
 import java.nio.charset.Charset;
 
-import static java.lang.String.format;
-
 public class BinaryReader implements Binary {
-    private Buffer m_buffer;
+    private BinaryBuffer m_buffer;
     private final Trace m_trace;
 
     private Charset m_charset;
+    private TraceMode m_traceMode;
+    private int m_field; // position of the field being decoded
+    private StringCache m_strings; // null when every string is decoded afresh
 
     public BinaryReader(byte[] bytes, Charset charset) {
+        this(bytes, charset, TraceMode.FULL);
+    }
+
+    public BinaryReader(byte[] bytes, Charset charset, TraceMode traceMode) {
+        this(new Buffer(bytes), charset, traceMode);
+    }
+
+    public BinaryReader(byte[] bytes, Charset charset, ByteOrder order) {
+        this(bytes, charset, order, TraceMode.FULL);
+    }
+
+    public BinaryReader(byte[] bytes, Charset charset, ByteOrder order, TraceMode traceMode) {
+        this(new Buffer(bytes, order), charset, traceMode);
+    }
+
+    // Decodes the remaining bytes of a ByteBuffer in place, no copy is made. The ByteBuffer's
+    // own order is used.
+
+    public BinaryReader(ByteBuffer bytes, Charset charset) {
+        this(bytes, charset, TraceMode.FULL);
+    }
+
+    public BinaryReader(ByteBuffer bytes, Charset charset, TraceMode traceMode) {
+        this(new NioBuffer(bytes), charset, traceMode);
+    }
+
+    public BinaryReader(BinaryBuffer buffer, Charset charset, TraceMode traceMode) {
         m_charset = charset;
+        m_traceMode = traceMode;
 
-        m_buffer = new Buffer(bytes);
-        m_trace = new Trace();
+        m_buffer = buffer;
+        m_trace = new Trace(traceMode == TraceMode.FULL ? buffer.getLimit() : 0);
+    }
+
+    // Starts decoding another message with this reader, keeping its buffer, trace and cache.
+
+    public void reset(byte[] bytes) {
+        reset(bytes, 0, bytes.length);
+    }
+
+    // Only a plain Buffer is moved in place. Anything else, such as a NioBuffer or a read-only
+    // SharedBytes cursor, is replaced by a new Buffer in the same byte order.
+
+    public void reset(byte[] bytes, int offset, int length) {
+        if (m_buffer.getClass() == Buffer.class)
+            ((Buffer) m_buffer).reset(bytes, offset, length);
+        else
+            m_buffer = new Buffer(bytes, offset, length, m_buffer.getByteOrder());
+        m_trace.clear();
+    }
+
+    // Starts decoding the remaining bytes of another ByteBuffer in place, in its own order.
+
+    public void reset(ByteBuffer bytes) {
+        m_buffer = new NioBuffer(bytes);
+        m_trace.clear();
+    }
+
+    // Moves onto the message at offset in the ByteBuffer this reader was made over, keeping
+    // its buffer, trace and cache. Nothing is allocated, so it suits one reader stepping
+    // through the records of a large mapped file.
+
+    public void reset(int offset, int length) {
+        if (!(m_buffer instanceof NioBuffer))
+            throw new IllegalStateException("Not reading a ByteBuffer");
+
+        ((NioBuffer) m_buffer).reset(offset, length);
+        m_trace.clear();
+    }
+
+    // Rewinds to decode the same bytes again.
+
+    public void clear() {
+        m_buffer.clear();
+        m_trace.clear();
     }
 
     public byte[] getBytes() {
         return m_buffer.copyBytes();
     }
 
+    public int mismatch(byte[] expected, int from) {
+        return m_buffer.mismatch(expected, from);
+    }
+
     public Trace getTrace() {
         return m_trace.copy();
     }
 
 
+    public TraceMode getTraceMode() {
+        return m_traceMode;
+    }
+
+    // Changes what the next message records, so a sampler can trace only some messages. Call it
+    // between messages, before reset or clear.
+
+    public void setTraceMode(TraceMode traceMode) {
+        m_traceMode = traceMode;
+    }
+
+    public ByteOrder getByteOrder() {
+        return m_buffer.getByteOrder();
+    }
+
+    // Switches the order for the rest of the message, e.g. after a big endian header.
+
+    public void setByteOrder(ByteOrder order) {
+        m_buffer.setByteOrder(order);
+    }
+
+    public StringCache getStringCache() {
+        return m_strings;
+    }
+
+    // With a cache, getString returns one shared instance per distinct field value.
+
+    public void setStringCache(StringCache cache) {
+        m_strings = cache;
+    }
+
     public void trace(String name, String comment) {
-        m_trace.trace(m_buffer.getPosition(), name, comment);
+        if (m_traceMode == TraceMode.FULL)
+            m_trace.trace(m_buffer.getPosition(), name, comment);
+        else
+            label(name);
     }
 
     public void label(String field) {
-        m_trace.label(m_buffer.getPosition(), field);
+        if (m_traceMode != TraceMode.OFF)
+            m_trace.label(m_buffer.getPosition(), field);
     }
 
 
@@ -53,7 +169,8 @@ public class BinaryReader implements Binary {
     }
 
     public boolean getBoolean(String name) {
-        return 0 != getInt1(name);
+        trace(name, FieldType.BOOL);
+        return 0 != value(getInt1());
     }
 
     public int skip(int n) {
@@ -65,8 +182,8 @@ public class BinaryReader implements Binary {
     }
 
     public int getInt1(String name) {
-        trace(name, format("// SInt1"));
-        return getInt1();
+        trace(name, FieldType.SINT1);
+        return value(getInt1());
     }
 
     public int getInt2() throws IOException {
@@ -74,8 +191,8 @@ public class BinaryReader implements Binary {
     }
 
     public int getInt2(String name) throws IOException {
-        trace(name, format("// SInt2"));
-        return getInt2();
+        trace(name, FieldType.SINT2);
+        return value(getInt2());
     }
 
     public int getUInt2() throws IOException {
@@ -83,8 +200,8 @@ public class BinaryReader implements Binary {
     }
 
     public int getUInt2(String name) throws IOException {
-        trace(name, format("// UInt2"));
-        return getUInt2();
+        trace(name, FieldType.UINT2);
+        return value(getUInt2());
     }
 
 
@@ -93,8 +210,8 @@ public class BinaryReader implements Binary {
     }
 
     public int getInt4(String name) throws IOException{
-        trace(name, format("// SInt4"));
-        return getInt4();
+        trace(name, FieldType.SINT4);
+        return value(getInt4());
     }
 
     public long getInt8() throws IOException {
@@ -102,12 +219,41 @@ public class BinaryReader implements Binary {
     }
 
     public long getInt8(String name) throws IOException {
-        trace(name, format("// SInt8"));
-        return getInt8();
+        trace(name, FieldType.SINT8);
+        return value(getInt8());
+    }
+
+    // Bulk arrays are traced as one field, e.g. "// SInt4[64]", not one per element.
+
+    public void getInt2s(short[] dst, int off, int len) {
+        m_buffer.getInt2s(dst, off, len);
+    }
+
+    public void getInt2s(short[] dst, int off, int len, String name) {
+        trace(name, FieldType.SINT2, 2 * len);
+        getInt2s(dst, off, len);
+    }
+
+    public void getInt4s(int[] dst, int off, int len) {
+        m_buffer.getInt4s(dst, off, len);
+    }
+
+    public void getInt4s(int[] dst, int off, int len, String name) {
+        trace(name, FieldType.SINT4, 4 * len);
+        getInt4s(dst, off, len);
+    }
+
+    public void getInt8s(long[] dst, int off, int len) {
+        m_buffer.getInt8s(dst, off, len);
+    }
+
+    public void getInt8s(long[] dst, int off, int len, String name) {
+        trace(name, FieldType.SINT8, 8 * len);
+        getInt8s(dst, off, len);
     }
 
     public byte[] getBytes(int length, String name) {
-        trace(name, format("// bytes[%d]", length));
+        trace(name, FieldType.BYTES, length);
 
         byte[] dst = new byte[length];
         m_buffer.getBytes(dst, 0, length);
@@ -119,22 +265,56 @@ public class BinaryReader implements Binary {
     }
 
     public char getUtfChar(String name) {
-        trace(name, format("// UTF Char"));
-        return getUtfChar();
+        trace(name, FieldType.UTF_CHAR);
+        return (char) value(getUtfChar());
     }
 
     public String getString(int length, String name) {
-        trace(name, format("// String[%d", length));
-
-        byte[] dst = new byte[length];
-        m_buffer.getBytes(dst, 0, length);
-        return new String(dst, m_charset).trim();
+        trace(name, FieldType.STRING, length);
+        if (null == m_strings)
+            return value(m_buffer.getString(length, m_charset));
+        return value(m_buffer.getString(length, m_charset, m_strings));
     }
 
     public int diff(String name1, String name2) {
         return getPosition(name1) - getPosition(name2);
     }
 
+    // Named reads trace the field before decoding it, so a failed read still shows up in the
+    // trace, and then record the decoded value. Only FULL mode keeps either.
+
+    private void trace(String name, FieldType type) {
+        trace(name, type, type.getSize());
+    }
+
+    private void trace(String name, FieldType type, int width) {
+        if (m_traceMode == TraceMode.FULL) {
+            m_field = m_buffer.getPosition();
+            m_trace.trace(m_field, name, type, width);
+        }
+        else {
+            label(name);
+        }
+    }
+
+    private int value(int n) {
+        if (m_traceMode == TraceMode.FULL)
+            m_trace.setValue(m_field, n);
+        return n;
+    }
+
+    private long value(long n) {
+        if (m_traceMode == TraceMode.FULL)
+            m_trace.setValue(m_field, n);
+        return n;
+    }
+
+    private String value(String s) {
+        if (m_traceMode == TraceMode.FULL)
+            m_trace.setValue(m_field, s);
+        return s;
+    }
+
     public String toString() {
         return Utils.toString(m_trace, m_buffer.copyBytes());
 
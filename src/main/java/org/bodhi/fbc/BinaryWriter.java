@@ -3,39 +3,147 @@ package org.bodhi.fbc;
 
 import static java.lang.String.format;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.Charset;
+import org.bodhi.fbc.impl.BinaryBuffer;
 import org.bodhi.fbc.impl.Buffer;
+import org.bodhi.fbc.impl.NioBuffer;
 
 public class BinaryWriter implements Binary {
-    private Buffer m_buffer;
+    private BinaryBuffer m_buffer;
     private final Trace m_trace;
     private final Charset m_charset;
+    private TraceMode m_traceMode;
+    private byte m_padding = ' ';
 
     public BinaryWriter(Charset charset) {
         this(32, charset);
     }
 
+    public BinaryWriter(Charset charset, TraceMode traceMode) {
+        this(32, charset, traceMode);
+    }
+
+    public BinaryWriter(Charset charset, ByteOrder order) {
+        this(32, charset, order, TraceMode.FULL);
+    }
+
+    public BinaryWriter(int size, Charset charset, ByteOrder order, TraceMode traceMode) {
+        this(new Buffer(size, Buffer.MAX_CAPACITY, order), charset, traceMode);
+    }
+
     public BinaryWriter(int size, Charset charset) {
+        this(size, charset, TraceMode.FULL);
+    }
+
+    public BinaryWriter(int size, Charset charset, TraceMode traceMode) {
+        this(new Buffer(size), charset, traceMode);
+    }
+
+    // Size is a hint for the initial capacity, the writer doubles it as needed up to maxCapacity.
+
+    public BinaryWriter(int size, int maxCapacity, Charset charset, TraceMode traceMode) {
+        this(new Buffer(size, maxCapacity), charset, traceMode);
+    }
+
+    // Writes into the supplied array, so a caller can encode message after message without
+    // allocating. A message that does not fit moves the writer to a larger copy.
+
+    public BinaryWriter(byte[] buffer, Charset charset, TraceMode traceMode) {
+        this(Buffer.forWriting(buffer, Buffer.MAX_CAPACITY), charset, traceMode);
+    }
+
+    // Writes into the remaining space of a ByteBuffer, e.g. a direct buffer about to be sent.
+    // The ByteBuffer does not grow.
+
+    public BinaryWriter(ByteBuffer buffer, Charset charset, TraceMode traceMode) {
+        this(new NioBuffer(buffer), charset, traceMode);
+    }
+
+    public BinaryWriter(BinaryBuffer buffer, Charset charset, TraceMode traceMode) {
         m_charset = charset;
+        m_traceMode = traceMode;
 
-        m_buffer = new Buffer(size);
-        m_trace = new Trace();
+        m_buffer = buffer;
+        m_trace = new Trace(traceMode == TraceMode.FULL ? buffer.getCapacity() : 0);
+    }
+
+    // Starts the next message in the supplied array, which is replaced by a larger copy if the
+    // message does not fit.
+
+    public void reset(byte[] buffer) {
+        reset(buffer, 0, buffer.length);
+    }
+
+    public void reset(byte[] buffer, int offset, int length) {
+        if (m_buffer instanceof Buffer)
+            ((Buffer) m_buffer).reset(buffer, offset, length);
+        else
+            m_buffer = Buffer.forWriting(buffer, offset, length, m_buffer.getByteOrder(), Buffer.MAX_CAPACITY);
+        m_trace.clear();
+    }
+
+    // Starts the next message over the same bytes, keeping any capacity the writer has grown to.
+
+    public void clear() {
+        m_buffer.clear();
+        m_trace.clear();
     }
 
     public byte[] getBytes() {
         return m_buffer.copyBytes();
     }
 
+    // Copies the written bytes into dst without allocating, returns the number copied.
+
+    public int getBytes(byte[] dst, int offset) {
+        return m_buffer.copyBytes(dst, offset);
+    }
+
+    public int getLength() {
+        return m_buffer.getPosition();
+    }
+
+    public int mismatch(byte[] expected, int from) {
+        return m_buffer.mismatch(expected, from);
+    }
+
     public Trace getTrace() {
         return m_trace.copy();
     }
 
+    public TraceMode getTraceMode() {
+        return m_traceMode;
+    }
+
+    // Changes what the next message records, so a sampler can trace only some messages. Call it
+    // between messages, before reset or clear.
+
+    public void setTraceMode(TraceMode traceMode) {
+        m_traceMode = traceMode;
+    }
+
+    public ByteOrder getByteOrder() {
+        return m_buffer.getByteOrder();
+    }
+
+    // Switches the order for the rest of the message, e.g. after a big endian header.
+
+    public void setByteOrder(ByteOrder order) {
+        m_buffer.setByteOrder(order);
+    }
+
     public void trace(String name, String comment) {
-        m_trace.trace(m_buffer.getPosition(), name, comment);
+        if (m_traceMode == TraceMode.FULL)
+            m_trace.trace(m_buffer.getPosition(), name, comment);
+        else
+            label(name);
     }
 
     public void label(String field) {
-        m_trace.label(m_buffer.getPosition(), field);
+        if (m_traceMode != TraceMode.OFF)
+            m_trace.label(m_buffer.getPosition(), field);
     }
 
     // Returns byte offset to the named position
@@ -49,7 +157,7 @@ public class BinaryWriter implements Binary {
     }
 
     public void putBoolean(boolean b, String name) {
-        trace(name, format("// bool: %b", b));
+        trace(name, FieldType.BOOL, b ? 1 : 0);
         putBoolean(b);
     }
 
@@ -58,7 +166,7 @@ public class BinaryWriter implements Binary {
     }
 
     public void putUtfChar(char c, String name) {
-        trace(name, format("// UTF Char: %c", c));
+        trace(name, FieldType.UTF_CHAR, c);
         putUtfChar(c);
     }
 
@@ -68,7 +176,7 @@ public class BinaryWriter implements Binary {
     }
 
     public void putInt1(int n, String name) {
-        trace(name, format("// SInt1: %d", n));
+        trace(name, FieldType.SINT1, n);
         putInt1(n);
     }
 
@@ -77,7 +185,7 @@ public class BinaryWriter implements Binary {
     }
 
     public void putUInt2(int n, String name) {
-        trace(name, format("// UInt2: %d", n));
+        trace(name, FieldType.UINT2, n);
         putUInt2(n);
     }
 
@@ -86,7 +194,7 @@ public class BinaryWriter implements Binary {
     }
 
     public void putInt2(int n, String name) {
-        trace(name, format("// SInt2: %d", n));
+        trace(name, FieldType.SINT2, n);
         putInt2(n);
     }
 
@@ -95,7 +203,7 @@ public class BinaryWriter implements Binary {
     }
 
     public void putInt4(int n, String name) {
-        trace(name, format("// SInt4: %d", n));
+        trace(name, FieldType.SINT4, n);
         putInt4(n);
     }
 
@@ -104,30 +212,76 @@ public class BinaryWriter implements Binary {
     }
 
     public void putInt8(long n, String name) {
-        trace(name, format("// SInt8: %d", n));
+        trace(name, FieldType.SINT8, n);
         putInt8(n);
     }
 
+    // Bulk arrays are traced as one field, e.g. "// SInt4[64]", not one per element.
+
+    public void putInt2s(short[] src, int off, int len) {
+        m_buffer.putInt2s(src, off, len);
+    }
+
+    public void putInt2s(short[] src, int off, int len, String name) {
+        traceArray(name, FieldType.SINT2, len);
+        putInt2s(src, off, len);
+    }
+
+    public void putInt4s(int[] src, int off, int len) {
+        m_buffer.putInt4s(src, off, len);
+    }
+
+    public void putInt4s(int[] src, int off, int len, String name) {
+        traceArray(name, FieldType.SINT4, len);
+        putInt4s(src, off, len);
+    }
+
+    public void putInt8s(long[] src, int off, int len) {
+        m_buffer.putInt8s(src, off, len);
+    }
+
+    public void putInt8s(long[] src, int off, int len, String name) {
+        traceArray(name, FieldType.SINT8, len);
+        putInt8s(src, off, len);
+    }
+
     public void putBytes(byte[] bytes, String name) {
-        trace(name, format("// bytes[]"));
+        traceBytes(name, bytes.length);
         m_buffer.putBytes(bytes);
     }
 
 
     public void putString(String s, String name) {
-        trace(name, String.format("// String: '%s'", s));
+        trace(name, FieldType.STRING, -1, s);
         m_buffer.putBytes(s.getBytes(m_charset));
     }
 
+    // Fixed width strings are encoded straight into the buffer, truncated to length bytes or
+    // padded with the padding byte.
+
+    public void putString(CharSequence s, int length) {
+        m_buffer.putString(s, length, m_charset, m_padding);
+    }
+
     public void putString(String s, int length, String name) {
-        trace(name, String.format("// String[%d]: '%s'", length, s));
-        m_buffer.putBytes(padRight(s, length).getBytes(m_charset), 0, length);
+        trace(name, FieldType.STRING, length, s);
+        putString(s, length);
+    }
+
+    public byte getPadding() {
+        return m_padding;
+    }
+
+    // The byte that pads fixed width strings, a space by default. C strings usually want 0.
+
+    public void setPadding(byte padding) {
+        m_padding = padding;
     }
 
 
     public void replaceInt4(String name, int n) {
         int position = getPosition(name);
-        m_trace.appendComment(position, format(" (Replaced with SInt4 %d)", n));
+        if (isCommenting()) m_trace.appendComment(position, format(" (Replaced with SInt4 %d)", n));
         m_buffer.putInt4(position, n);
     }
 
@@ -135,12 +289,42 @@ public class BinaryWriter implements Binary {
         return getPosition(name1) - getPosition(name2);
     }
 
-    public String toString() {
-        return Utils.toString(m_trace, m_buffer.copyBytes());
+    // Named writes record the raw value, the comment text is only built when a dump reads it.
+
+    private void trace(String name, FieldType type, long value) {
+        if (m_traceMode == TraceMode.FULL)
+            m_trace.trace(m_buffer.getPosition(), name, type, type.getSize(), value);
+        else
+            label(name);
     }
 
-    private static String padRight(String s, int n) {
-        return String.format("%1$-" + n + "s", s);  
+    private void traceBytes(String name, int length) {
+        if (m_traceMode == TraceMode.FULL)
+            m_trace.trace(m_buffer.getPosition(), name, FieldType.BYTES, length);
+        else
+            label(name);
+    }
+
+    private void traceArray(String name, FieldType type, int count) {
+        if (m_traceMode == TraceMode.FULL)
+            m_trace.trace(m_buffer.getPosition(), name, type, count * type.getSize());
+        else
+            label(name);
+    }
+
+    private void trace(String name, FieldType type, int width, String value) {
+        if (m_traceMode == TraceMode.FULL)
+            m_trace.trace(m_buffer.getPosition(), name, type, width, value);
+        else
+            label(name);
+    }
+
+    private boolean isCommenting() {
+        return m_traceMode == TraceMode.FULL;
+    }
+
+    public String toString() {
+        return Utils.toString(m_trace, m_buffer.copyBytes());
     }
 
 }
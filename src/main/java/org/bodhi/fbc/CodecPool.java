@@ -0,0 +1,43 @@
+package org.bodhi.fbc;
+
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/**
+ * CodecPool keeps one BinaryReader and one BinaryWriter per thread and resets them for each
+ * message, so a steady state decode or encode loop allocates nothing per message. An instance
+ * handed out is only valid until the same thread asks the pool for the next one.
+ */
+public class CodecPool {
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ThreadLocal<BinaryReader> m_readers;
+    private final ThreadLocal<BinaryWriter> m_writers;
+
+    public CodecPool(Charset charset, TraceMode traceMode) {
+        this(charset, ByteOrder.BIG_ENDIAN, traceMode, 256);
+    }
+
+    // Size is the initial capacity of each thread's writer, which grows and keeps what it grows to.
+
+    public CodecPool(Charset charset, ByteOrder order, TraceMode traceMode, int size) {
+        m_readers = ThreadLocal.withInitial(() -> new BinaryReader(EMPTY, charset, order, traceMode));
+        m_writers = ThreadLocal.withInitial(() -> new BinaryWriter(size, charset, order, traceMode));
+    }
+
+    public BinaryReader reader(byte[] bytes) {
+        return reader(bytes, 0, bytes.length);
+    }
+
+    public BinaryReader reader(byte[] bytes, int offset, int length) {
+        BinaryReader reader = m_readers.get();
+        reader.reset(bytes, offset, length);
+        return reader;
+    }
+
+    public BinaryWriter writer() {
+        BinaryWriter writer = m_writers.get();
+        writer.clear();
+        return writer;
+    }
+}
@@ -0,0 +1,222 @@
+package org.bodhi.fbc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * CorpusRunner checks a directory of captured messages against their expected encodings, in
+ * parallel. Every file ending in the input suffix is paired with the file of the same name
+ * ending in the expected suffix, e.g. order-17.in with order-17.bin. The encoder turns an input
+ * into a Binary, typically by decoding it with a BinaryReader and encoding it again with a
+ * BinaryWriter, and the result must match the expected bytes exactly.
+ *
+ * Messages are spread over a ForkJoinPool. The encoder is called from many threads at once, so
+ * it must not share readers or writers between calls; a CodecPool gives each thread its own.
+ * Matching messages cost one mismatch pass; only failures are rendered, with
+ * Utils.toString(Binary, byte[]).
+ *
+ *   CorpusRunner.Report report = new CorpusRunner(".in", ".bin", encoder).run(Paths.get("corpus"));
+ *   System.out.print(report);
+ */
+public class CorpusRunner {
+
+    public interface Encoder {
+        Binary encode(byte[] input) throws IOException;
+    }
+
+    private final String m_inputSuffix;
+    private final String m_expectedSuffix;
+    private final Encoder m_encoder;
+    private final int m_parallelism;
+
+    public CorpusRunner(String inputSuffix, String expectedSuffix, Encoder encoder) {
+        this(inputSuffix, expectedSuffix, encoder, Runtime.getRuntime().availableProcessors());
+    }
+
+    public CorpusRunner(String inputSuffix, String expectedSuffix, Encoder encoder, int parallelism) {
+        m_inputSuffix = inputSuffix;
+        m_expectedSuffix = expectedSuffix;
+        m_encoder = encoder;
+        m_parallelism = parallelism;
+    }
+
+    // Runs every input in the directory, not its subdirectories. Results are in name order.
+
+    public Report run(Path directory) throws IOException {
+        List<Path> inputs;
+        try (Stream<Path> files = Files.list(directory)) {
+            inputs = files.filter(path -> path.getFileName().toString().endsWith(m_inputSuffix))
+                          .filter(Files::isRegularFile)
+                          .sorted()
+                          .collect(Collectors.toList());
+        }
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(m_parallelism);
+        try {
+            List<Result> results = pool.submit(() -> inputs.parallelStream()
+                                                           .map(this::check)
+                                                           .collect(Collectors.toList()))
+                                       .get();
+            return new Report(results, System.nanoTime() - start);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted running " + directory, e);
+        }
+        catch (ExecutionException e) {
+            throw new IOException("Failed running " + directory, e.getCause());
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    // Checks one message. Only the encoding and comparison are timed, not the file reads. A file
+    // that can not be read fails its message, like a missing expected file, not the run.
+
+    private Result check(Path input) {
+        String file = input.getFileName().toString();
+        String name = file.substring(0, file.length() - m_inputSuffix.length());
+        Path expectedPath = input.resolveSibling(name + m_expectedSuffix);
+
+        byte[] bytes;
+        byte[] expected;
+        try {
+            bytes = Files.readAllBytes(input);
+            if (!Files.exists(expectedPath))
+                return new Result(name, false, 0, "No expected file " + expectedPath.getFileName());
+            expected = Files.readAllBytes(expectedPath);
+        }
+        catch (IOException e) {
+            return new Result(name, false, 0, "Unreadable: " + e);
+        }
+
+        long start = System.nanoTime();
+        try {
+            Binary actual = m_encoder.encode(bytes);
+            boolean passed = actual.mismatch(expected, 0) < 0;
+            long nanos = System.nanoTime() - start;
+            return new Result(name, passed, nanos, passed ? null : Utils.toString(actual, expected));
+        }
+        catch (IOException | RuntimeException e) {
+            return new Result(name, false, System.nanoTime() - start, e.toString());
+        }
+    }
+
+    /**
+     * The outcome of one message. The diff is null for a message that passed, and the error for
+     * one that could not be encoded.
+     */
+    public static final class Result {
+        private final String m_name;
+        private final boolean m_passed;
+        private final long m_nanos;
+        private final String m_diff;
+
+        Result(String name, boolean passed, long nanos, String diff) {
+            m_name = name;
+            m_passed = passed;
+            m_nanos = nanos;
+            m_diff = diff;
+        }
+
+        public String getName() {
+            return m_name;
+        }
+
+        public boolean isPassed() {
+            return m_passed;
+        }
+
+        public long getNanos() {
+            return m_nanos;
+        }
+
+        public String getDiff() {
+            return m_diff;
+        }
+    }
+
+    /**
+     * The results of a run. toString is the summary: counts, timings, the slowest messages and
+     * the diff of each failure.
+     */
+    public static final class Report {
+        private static final int SLOWEST = 10;
+
+        private final List<Result> m_results;
+        private final List<Result> m_failures;
+        private final long m_elapsedNanos;
+
+        Report(List<Result> results, long elapsedNanos) {
+            m_results = Collections.unmodifiableList(results);
+            m_failures = results.stream().filter(result -> !result.isPassed()).collect(Collectors.toList());
+            m_elapsedNanos = elapsedNanos;
+        }
+
+        public List<Result> getResults() {
+            return m_results;
+        }
+
+        public List<Result> getFailures() {
+            return m_failures;
+        }
+
+        public boolean isPassed() {
+            return m_failures.isEmpty();
+        }
+
+        public long getElapsedNanos() {
+            return m_elapsedNanos;
+        }
+
+        public void write(Appendable out) throws IOException {
+            long total = 0;
+            long max = 0;
+            for (Result result : m_results) {
+                total += result.getNanos();
+                max = Math.max(max, result.getNanos());
+            }
+
+            out.append(String.format("%d messages, %d passed, %d failed in %.1f ms\n",
+                                     m_results.size(), m_results.size() - m_failures.size(), m_failures.size(),
+                                     m_elapsedNanos / 1e6));
+            if (!m_results.isEmpty())
+                out.append(String.format("per message: mean %.1f us, max %.1f us\n",
+                                         total / 1e3 / m_results.size(), max / 1e3));
+
+            List<Result> slowest = new ArrayList<>(m_results);
+            slowest.sort(Comparator.comparingLong(Result::getNanos).reversed());
+            out.append("slowest:\n");
+            for (Result result : slowest.subList(0, Math.min(SLOWEST, slowest.size()))) {
+                out.append(String.format("  %10.1f us %s\n", result.getNanos() / 1e3, result.getName()));
+            }
+
+            for (Result result : m_failures) {
+                out.append("FAILED ").append(result.getName()).append('\n').append(result.getDiff()).append('\n');
+            }
+        }
+
+        public String toString() {
+            StringBuilder b = new StringBuilder();
+            try {
+                write(b);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);  // StringBuilder does not throw
+            }
+            return b.toString();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.bodhi.fbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FieldDiff compares two messages field by field, using the fields their traces recorded, and
+ * reports the fields that were added, removed or changed with their old and new values. Both
+ * messages need traces with fields and values, as TraceMode.FULL records them.
+ *
+ * Fields are matched by name and occurrence, the third "Price" of one message with the third
+ * "Price" of the other, not by offset. A field that moved because a variable length field
+ * before it grew or shrank is still matched, and only reported if its own bytes changed. The
+ * work is linear in the number of fields: each pair is compared over the field's own bytes,
+ * a handful for fixed size fields.
+ *
+ * Changes come in the order of the old message, followed by the fields only the new one has.
+ */
+public class FieldDiff {
+
+    public enum Kind {
+        ADDED,
+        REMOVED,
+        CHANGED
+    }
+
+    private static final int MAX_HEX = 32;      // bytes shown for a field without a value
+
+    private FieldDiff() {
+    }
+
+    public static List<Change> compare(Binary oldMessage, Binary newMessage) {
+        return compare(oldMessage.getTrace(), oldMessage.getBytes(), newMessage.getTrace(), newMessage.getBytes());
+    }
+
+    public static List<Change> compare(Trace oldTrace, byte[] oldBytes, Trace newTrace, byte[] newBytes) {
+        List<Trace.Field> olds = oldTrace.getFields();
+        List<Trace.Field> news = newTrace.getFields();
+        List<Change> changes = new ArrayList<>();
+
+        Map<String, Occurrences> byName = new HashMap<>();
+        for (int ii=0; ii<news.size(); ii++) {
+            byName.computeIfAbsent(news.get(ii).getName(), name -> new Occurrences()).add(ii);
+        }
+        boolean[] matched = new boolean[news.size()];
+        Map<String, int[]> seen = new HashMap<>();
+
+        for (int ii=0; ii<olds.size(); ii++) {
+            Trace.Field old = olds.get(ii);
+            int oldEnd = end(olds, ii, oldBytes.length);
+            Occurrences occurrences = byName.get(old.getName());
+            int occurrence = seen.computeIfAbsent(old.getName(), name -> new int[1])[0]++;
+
+            if (null == occurrences || occurrence >= occurrences.m_size) {
+                changes.add(new Change(Kind.REMOVED, old.getName(), occurrence, old.getPosition(), -1,
+                                       value(old, oldBytes, oldEnd), null));
+                continue;
+            }
+
+            int index = occurrences.m_indexes[occurrence];
+            Trace.Field now = news.get(index);
+            int newEnd = end(news, index, newBytes.length);
+            matched[index] = true;
+
+            if (same(old, oldBytes, oldEnd, now, newBytes, newEnd))
+                continue;
+
+            String oldValue = value(old, oldBytes, oldEnd);
+            String newValue = value(now, newBytes, newEnd);
+            if (oldValue.equals(newValue)) {
+                oldValue = hex(old, oldBytes, oldEnd);
+                newValue = hex(now, newBytes, newEnd);
+            }
+            changes.add(new Change(Kind.CHANGED, old.getName(), occurrence, old.getPosition(), now.getPosition(),
+                                   oldValue, newValue));
+        }
+
+        seen.clear();
+        for (int ii=0; ii<news.size(); ii++) {
+            Trace.Field now = news.get(ii);
+            int occurrence = seen.computeIfAbsent(now.getName(), name -> new int[1])[0]++;
+
+            if (!matched[ii])
+                changes.add(new Change(Kind.ADDED, now.getName(), occurrence, -1, now.getPosition(),
+                                       null, value(now, newBytes, end(news, ii, newBytes.length))));
+        }
+        return changes;
+    }
+
+    // A field without a traced width runs up to the next field, or the end of the message.
+
+    private static int end(List<Trace.Field> fields, int index, int length) {
+        Trace.Field field = fields.get(index);
+        int end;
+
+        if (field.getWidth() >= 0)
+            end = field.getPosition() + field.getWidth();
+        else if (index + 1 < fields.size())
+            end = fields.get(index + 1).getPosition();
+        else
+            end = length;
+
+        return Math.max(Math.min(end, length), Math.min(field.getPosition(), length));
+    }
+
+    // Compares bytes rather than traced values, which miss a replaceInt4 after the fact.
+
+    private static boolean same(Trace.Field a, byte[] aBytes, int aEnd, Trace.Field b, byte[] bBytes, int bEnd) {
+        if (a.getType() != b.getType())
+            return false;
+
+        int aStart = Math.min(a.getPosition(), aBytes.length);
+        int bStart = Math.min(b.getPosition(), bBytes.length);
+        return Arrays.equals(aBytes, aStart, aEnd, bBytes, bStart, bEnd);
+    }
+
+    // The traced value, or the field's bytes in hex when it has none. A traced value is the one
+    // written or read, so after a replaceInt4 the bytes differ while the values agree; compare
+    // then shows both sides in hex.
+
+    private static String value(Trace.Field field, byte[] bytes, int end) {
+        String value = field.getValueString();
+        return (null != value) ? value : hex(field, bytes, end);
+    }
+
+    private static String hex(Trace.Field field, byte[] bytes, int end) {
+        int start = Math.min(field.getPosition(), bytes.length);
+        StringBuilder b = new StringBuilder("0x");
+        for (int ii=start; ii<Math.min(end, start + MAX_HEX); ii++) {
+            b.append(Character.forDigit((bytes[ii] >> 4) & 0xf, 16)).append(Character.forDigit(bytes[ii] & 0xf, 16));
+        }
+        if (end - start > MAX_HEX)
+            b.append("...");
+        return b.toString();
+    }
+
+    // The indexes of the new fields of one name, in order.
+
+    private static final class Occurrences {
+        private int[] m_indexes = new int[1];
+        private int m_size;
+
+        void add(int index) {
+            if (m_size == m_indexes.length)
+                m_indexes = Arrays.copyOf(m_indexes, 2 * m_size);
+            m_indexes[m_size++] = index;
+        }
+    }
+
+    /**
+     * One field that differs. Positions are -1 and values null on the side the field is missing
+     * from. Occurrence counts from 0 among the fields of the same name.
+     */
+    public static final class Change {
+        private final Kind m_kind;
+        private final String m_field;
+        private final int m_occurrence;
+        private final int m_oldPosition;
+        private final int m_newPosition;
+        private final String m_oldValue;
+        private final String m_newValue;
+
+        Change(Kind kind, String field, int occurrence, int oldPosition, int newPosition, String oldValue, String newValue) {
+            m_kind = kind;
+            m_field = field;
+            m_occurrence = occurrence;
+            m_oldPosition = oldPosition;
+            m_newPosition = newPosition;
+            m_oldValue = oldValue;
+            m_newValue = newValue;
+        }
+
+        public Kind getKind() {
+            return m_kind;
+        }
+
+        public String getField() {
+            return m_field;
+        }
+
+        public int getOccurrence() {
+            return m_occurrence;
+        }
+
+        public int getOldPosition() {
+            return m_oldPosition;
+        }
+
+        public int getNewPosition() {
+            return m_newPosition;
+        }
+
+        public String getOldValue() {
+            return m_oldValue;
+        }
+
+        public String getNewValue() {
+            return m_newValue;
+        }
+
+        // E.g. "CHANGED Price[1] 3 -> 4 (offset 17 -> 19)" or "ADDED Flag true (offset 40)".
+
+        public String toString() {
+            StringBuilder b = new StringBuilder().append(m_kind).append(' ').append(m_field);
+            if (m_occurrence > 0)
+                b.append('[').append(m_occurrence).append(']');
+
+            switch (m_kind) {
+                case ADDED:
+                    b.append(' ').append(m_newValue).append(" (offset ").append(m_newPosition).append(')');
+                    break;
+                case REMOVED:
+                    b.append(' ').append(m_oldValue).append(" (offset ").append(m_oldPosition).append(')');
+                    break;
+                default:
+                    b.append(' ').append(m_oldValue).append(" -> ").append(m_newValue).append(" (offset ").append(m_oldPosition);
+                    if (m_newPosition != m_oldPosition)
+                        b.append(" -> ").append(m_newPosition);
+                    b.append(')');
+            }
+            return b.toString();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.bodhi.fbc;
+
+/**
+ * FieldType is the kind of a traced field. Trace stores the type, width and value of each field
+ * and only turns them into comment text, e.g. "// SInt4: 25", when a dump asks for it.
+ */
+public enum FieldType {
+    BOOL("bool", 1),
+    UTF_CHAR("UTF Char", 2),
+    SINT1("SInt1", 1),
+    SINT2("SInt2", 2),
+    UINT2("UInt2", 2),
+    SINT4("SInt4", 4),
+    SINT8("SInt8", 8),
+    BYTES("bytes", 0),
+    STRING("String", 0);
+
+    private final String m_name;
+    private final int m_size;
+
+    FieldType(String name, int size) {
+        m_name = name;
+        m_size = size;
+    }
+
+    public String getName() {
+        return m_name;
+    }
+
+    // Returns the width in bytes, or 0 when the width varies from field to field.
+
+    public int getSize() {
+        return m_size;
+    }
+
+    public boolean isFixedSize() {
+        return m_size > 0;
+    }
+
+    void appendComment(StringBuilder b, int width, boolean hasValue, long value, String text) {
+        b.append("// ").append(m_name);
+
+        if (!isFixedSize() && width >= 0)
+            b.append('[').append(width).append(']');
+        else if (isFixedSize() && width > m_size)
+            b.append('[').append(width / m_size).append(']');   // an array, width is all of it
+
+        if (hasValue) {
+            b.append(": ");
+            appendValue(b, value, text);
+        }
+    }
+
+    void appendValue(StringBuilder b, long value, String text) {
+        switch (this) {
+            case BOOL:
+                b.append(value != 0);
+                break;
+            case UTF_CHAR:
+                b.append((char) value);
+                break;
+            case STRING:
+                b.append('\'').append(text).append('\'');
+                break;
+            default:
+                b.append(value);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.bodhi.fbc;
+
+import java.nio.charset.Charset;
+import org.bodhi.fbc.impl.BinaryBuffer;
+
+/**
+ * Flyweight is a base for read-only views of a message that sits in a buffer. A view holds
+ * nothing but the buffer and the offset of the message; each accessor reads its field on
+ * demand at a fixed offset, so a decoder that only needs a few fields of a large message
+ * never touches, copies or allocates the rest. One view can be re-pointed at message after
+ * message with wrap or next, without allocating.
+ *
+ *   class QuoteView extends Flyweight {
+ *       public int size()      { return 24; }
+ *       public int price()     { return getInt4(12); }
+ *       public long time()     { return getInt8(16); }
+ *   }
+ *
+ * Field offsets can come from StructCodec.offsetOf when the message also has a schema.
+ */
+public abstract class Flyweight {
+    private BinaryBuffer m_buffer;
+    private int m_offset;
+
+    // Returns the size of one message, used by next() to step to the following message.
+
+    public abstract int size();
+
+    public Flyweight wrap(BinaryBuffer buffer, int offset) {
+        m_buffer = buffer;
+        m_offset = offset;
+        return this;
+    }
+
+    // Moves the view onto the message that follows this one, returns false past the end.
+
+    public boolean next() {
+        m_offset += size();
+        return m_offset + size() <= m_buffer.getLimit();
+    }
+
+    public BinaryBuffer getBuffer() {
+        return m_buffer;
+    }
+
+    public int getOffset() {
+        return m_offset;
+    }
+
+    // Accessors take the offset of the field within the message.
+
+    protected boolean getBoolean(int field) {
+        return 0 != m_buffer.getInt1(m_offset + field);
+    }
+
+    protected int getInt1(int field) {
+        return m_buffer.getInt1(m_offset + field);
+    }
+
+    protected int getUInt1(int field) {
+        return m_buffer.getUInt1(m_offset + field);
+    }
+
+    protected int getInt2(int field) {
+        return m_buffer.getInt2(m_offset + field);
+    }
+
+    protected int getUInt2(int field) {
+        return m_buffer.getUInt2(m_offset + field);
+    }
+
+    protected int getInt4(int field) {
+        return m_buffer.getInt4(m_offset + field);
+    }
+
+    protected long getInt8(int field) {
+        return m_buffer.getInt8(m_offset + field);
+    }
+
+    protected char getUtfChar(int field) {
+        return m_buffer.getUtfChar(m_offset + field);
+    }
+
+    protected String getString(int field, int length, Charset charset) {
+        return m_buffer.getString(m_offset + field, length, charset);
+    }
+
+    protected int getBytes(int field, byte[] dst, int off, int length) {
+        return m_buffer.getBytes(m_offset + field, dst, off, length);
+    }
+
+    // Compares a fixed width text field with expected, ignoring trailing spaces and NULs,
+    // without decoding it. Handy for filtering on a symbol before reading anything else.
+
+    protected boolean isString(int field, int length, byte[] expected) {
+        if (expected.length > length)
+            return false;
+
+        int start = m_offset + field;
+        for (int ii=0; ii<expected.length; ii++) {
+            if (m_buffer.getInt1(start + ii) != expected[ii])
+                return false;
+        }
+        for (int ii=expected.length; ii<length; ii++) {
+            int b = m_buffer.getInt1(start + ii);
+            if (b != ' ' && b != 0)
+                return false;
+        }
+        return true;
+    }
+}
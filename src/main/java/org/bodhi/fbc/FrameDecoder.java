@@ -0,0 +1,280 @@
+package org.bodhi.fbc;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import org.bodhi.fbc.impl.Buffer;
+
+/**
+ * FrameDecoder splits a sequence of length prefixed messages into frames, replacing hand
+ * written loops of getInt4, moveToPosition and skip. Frames are not copied: a Batch gives the
+ * offset and length of each frame's payload in a shared Buffer, ready for a Flyweight or the
+ * Buffer's absolute getters. Frames are handed over a batch at a time, so the cost of the
+ * handler call is spread over many messages.
+ *
+ * Input may arrive in chunks that split a frame. The incomplete tail of one chunk is carried
+ * over and completed from the next; that is the only time bytes are copied.
+ *
+ * A Batch, and the bytes behind it, are only valid during the handler call.
+ */
+public class FrameDecoder {
+
+    public enum Prefix {
+        UINT2(2),
+        INT4(4);
+
+        private final int m_size;
+
+        Prefix(int size) {
+            m_size = size;
+        }
+
+        public int getSize() {
+            return m_size;
+        }
+    }
+
+    public interface Handler {
+        void onFrames(Batch batch) throws IOException;
+    }
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Prefix m_prefix;
+    private final boolean m_inclusive;     // the length counts the prefix itself
+    private final int m_maxFrameLength;
+    private final Buffer m_buffer;
+    private final Batch m_batch;
+
+    private byte[] m_carry = new byte[64];
+    private int m_carried;
+
+    public FrameDecoder(Prefix prefix, ByteOrder order, boolean inclusive) {
+        this(prefix, order, inclusive, Buffer.MAX_CAPACITY, 64);
+    }
+
+    // Frames longer than maxFrameLength are rejected as corrupt rather than buffered.
+
+    public FrameDecoder(Prefix prefix, ByteOrder order, boolean inclusive, int maxFrameLength, int batchSize) {
+        m_prefix = prefix;
+        m_inclusive = inclusive;
+        m_maxFrameLength = maxFrameLength;
+        m_buffer = new Buffer(EMPTY, order);
+        m_batch = new Batch(m_buffer, batchSize);
+    }
+
+    // Returns the number of bytes held over from an incomplete frame.
+
+    public int getPending() {
+        return m_carried;
+    }
+
+    public void clear() {
+        m_carried = 0;
+    }
+
+    // Hands every complete frame in bytes[offset, offset + length) to the handler and keeps an
+    // incomplete one for the next call. Returns the number of frames handed over.
+
+    public int decode(byte[] bytes, int offset, int length, Handler handler) throws IOException {
+        int pos = offset;
+        int end = offset + length;
+        int frames = 0;
+
+        if (m_carried > 0) {
+            pos = complete(bytes, pos, end, handler);
+            if (m_carried > 0)
+                return 0;
+            frames++;
+        }
+
+        m_batch.point(bytes, end);
+        int header = m_prefix.getSize();
+
+        while (end - pos >= header) {
+            int frameLength = frameLength(pos);
+            if (end - pos < frameLength)
+                break;
+
+            m_batch.add(pos + header, frameLength - header);
+            if (m_batch.isFull())
+                deliver(handler);
+
+            pos += frameLength;
+            frames++;
+        }
+
+        if (m_batch.size() > 0)
+            deliver(handler);
+
+        carry(bytes, pos, end - pos);
+        return frames;
+    }
+
+    // Heap buffers are decoded in place, others go through a copy. The position moves past
+    // everything consumed, including a carried over tail.
+
+    public int decode(ByteBuffer bytes, Handler handler) throws IOException {
+        int length = bytes.remaining();
+        int frames;
+
+        if (bytes.hasArray()) {
+            frames = decode(bytes.array(), bytes.arrayOffset() + bytes.position(), length, handler);
+        }
+        else {
+            byte[] copy = new byte[length];
+            bytes.get(bytes.position(), copy, 0, length);
+            frames = decode(copy, 0, length, handler);
+        }
+        bytes.position(bytes.position() + length);
+        return frames;
+    }
+
+    // Decodes a whole stream, reading chunkSize bytes at a time. A frame cut short by the end
+    // of the stream is an EOFException.
+
+    public long decode(InputStream in, int chunkSize, Handler handler) throws IOException {
+        byte[] chunk = new byte[chunkSize];
+        long frames = 0;
+        int count;
+
+        while ((count = in.read(chunk, 0, chunk.length)) >= 0) {
+            frames += decode(chunk, 0, count, handler);
+        }
+
+        if (m_carried > 0)
+            throw new EOFException("Stream ended " + m_carried + " bytes into a frame");
+        return frames;
+    }
+
+    // Adds bytes to the carried frame, delivering it once whole. Returns where the caller
+    // should carry on in bytes.
+
+    private int complete(byte[] bytes, int pos, int end, Handler handler) throws IOException {
+        int header = m_prefix.getSize();
+
+        if (m_carried < header) {
+            int n = Math.min(header - m_carried, end - pos);
+            System.arraycopy(bytes, pos, m_carry, m_carried, n);
+            m_carried += n;
+            pos += n;
+            if (m_carried < header)
+                return pos;
+        }
+
+        m_batch.point(m_carry, m_carry.length);
+        int frameLength = frameLength(0);
+        if (m_carry.length < frameLength)
+            m_carry = Arrays.copyOf(m_carry, frameLength);
+
+        int n = Math.min(frameLength - m_carried, end - pos);
+        System.arraycopy(bytes, pos, m_carry, m_carried, n);
+        m_carried += n;
+        pos += n;
+
+        if (m_carried == frameLength) {
+            m_batch.point(m_carry, frameLength);
+            m_batch.add(header, frameLength - header);
+            deliver(handler);
+            m_carried = 0;
+        }
+        return pos;
+    }
+
+    private void carry(byte[] bytes, int pos, int length) {
+        if (m_carry.length < length)
+            m_carry = Arrays.copyOf(m_carry, Math.max(length, 2 * m_carry.length));
+        System.arraycopy(bytes, pos, m_carry, 0, length);
+        m_carried = length;
+    }
+
+    // Returns the length of the frame at offset, prefix included.
+
+    private int frameLength(int offset) throws IOException {
+        long n = (m_prefix == Prefix.UINT2) ? m_buffer.getUInt2(offset) : m_buffer.getInt4(offset);
+        long frameLength = m_inclusive ? n : n + m_prefix.getSize();
+
+        if (frameLength < m_prefix.getSize() || frameLength - m_prefix.getSize() > m_maxFrameLength)
+            throw new IOException("Bad frame length " + n + " at " + offset);
+        return (int) frameLength;
+    }
+
+    private void deliver(Handler handler) throws IOException {
+        try {
+            handler.onFrames(m_batch);
+        }
+        finally {
+            m_batch.clear();
+        }
+    }
+
+    /**
+     * The frames of one handler call. Offsets are of the payloads, past the length prefix.
+     */
+    public static class Batch {
+        private final Buffer m_buffer;
+        private byte[] m_bytes;          // the array m_buffer is over
+        private final int[] m_offsets;
+        private final int[] m_lengths;
+        private int m_size;
+
+        Batch(Buffer buffer, int capacity) {
+            m_buffer = buffer;
+            m_offsets = new int[Math.max(capacity, 1)];
+            m_lengths = new int[m_offsets.length];
+        }
+
+        public int size() {
+            return m_size;
+        }
+
+        // The buffer holding every frame of the batch, read it with absolute getters.
+
+        public Buffer getBuffer() {
+            return m_buffer;
+        }
+
+        public int getOffset(int frame) {
+            return m_offsets[frame];
+        }
+
+        public int getLength(int frame) {
+            return m_lengths[frame];
+        }
+
+        // Returns a reader over one payload, sharing the bytes.
+
+        public BinaryReader reader(int frame, Charset charset, TraceMode traceMode) {
+            return new BinaryReader(slice(frame), charset, traceMode);
+        }
+
+        public ByteBuffer slice(int frame) {
+            return ByteBuffer.wrap(m_bytes, m_offsets[frame], m_lengths[frame])
+                             .slice()
+                             .order(m_buffer.getByteOrder());
+        }
+
+        void point(byte[] bytes, int length) {
+            m_bytes = bytes;
+            m_buffer.reset(bytes, 0, length);
+        }
+
+        void add(int offset, int length) {
+            m_offsets[m_size] = offset;
+            m_lengths[m_size] = length;
+            m_size++;
+        }
+
+        boolean isFull() {
+            return m_size == m_offsets.length;
+        }
+
+        void clear() {
+            m_size = 0;
+        }
+    }
+}
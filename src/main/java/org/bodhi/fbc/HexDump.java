@@ -0,0 +1,223 @@
+package org.bodhi.fbc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * HexDump renders the annotated dumps of Utils.toString straight into an Appendable, e.g. a
+ * Writer on a file, one line at a time. Numbers are formatted from lookup tables into one
+ * reused line buffer, so memory stays constant however large the dump, and a byte range or
+ * page can be rendered on its own.
+ *
+ *   new HexDump(reader.getTrace()).dump(bytes, 0, 4096, writer);
+ *
+ * The output is the same, byte for byte, as the String.format patterns it replaces:
+ *   "%4d 0x%04x %20s %s %s\n" for a dump, and
+ *   "%4d 0x%04x %20s %4s %4s %c %s\n" under a header for a comparison.
+ */
+public class HexDump {
+    public static final String DIFF_HEADER = String.format("%9s %20s %s %s\n", "Off", "Field", "Actual", "Expected");
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+    private static final char[] HEX = new char[512];     // two digits for each byte value
+    private static final int FIELD_WIDTH = 20;
+
+    static {
+        for (int ii=0; ii<256; ii++) {
+            HEX[2 * ii] = DIGITS[ii >>> 4];
+            HEX[2 * ii + 1] = DIGITS[ii & 0xf];
+        }
+    }
+
+    private final Trace m_trace;
+    private char[] m_line = new char[128];
+    private int m_length;
+    private CharBuffer m_wrapped;
+
+    public HexDump(Trace trace) {
+        m_trace = trace;
+    }
+
+    public void dump(byte[] bytes, Appendable out) throws IOException {
+        dump(bytes, 0, bytes.length, out);
+    }
+
+    // Renders the lines for bytes[offset, offset + length), numbered by their offset in bytes.
+
+    public void dump(byte[] bytes, int offset, int length, Appendable out) throws IOException {
+        int end = (int) Math.min((long) offset + length, bytes.length);
+
+        for (int ii=Math.max(offset, 0); ii<end; ii++) {
+            m_length = 0;
+            appendOffsets(ii);
+            appendField(ii);
+            appendHex(bytes, ii);
+            append(' ');
+            appendComment(ii);
+            append('\n');
+            flush(out);
+        }
+    }
+
+    // Renders page number page of a dump cut into pages of lines bytes, returns false once past
+    // the end, so a caller can page through a huge buffer without holding the whole dump.
+
+    public boolean page(byte[] bytes, int page, int lines, Appendable out) throws IOException {
+        long offset = (long) page * lines;
+        if (offset < 0 || offset >= bytes.length)
+            return false;
+
+        dump(bytes, (int) offset, (int) Math.min(lines, bytes.length - offset), out);
+        return true;
+    }
+
+    public void diff(byte[] left, byte[] right, Appendable out) throws IOException {
+        out.append(DIFF_HEADER);
+        diff(left, right, 0, Math.max(left.length, right.length), out);
+    }
+
+    // Renders the comparison lines for [offset, offset + length), without the header.
+
+    public void diff(byte[] left, byte[] right, int offset, int length, Appendable out) throws IOException {
+        int end = (int) Math.min((long) offset + length, Math.max(left.length, right.length));
+
+        for (int ii=Math.max(offset, 0); ii<end; ii++) {
+            m_length = 0;
+            appendOffsets(ii);
+            appendField(ii);
+            appendHex(left, ii);
+            append(' ');
+            appendHex(right, ii);
+            append(' ');
+            append(same(left, right, ii) ? ' ' : '*');
+            append(' ');
+            appendComment(ii);
+            append('\n');
+            flush(out);
+        }
+    }
+
+    // Returns the byte as "0x%02x" would.
+
+    static String hex(byte value) {
+        int index = 2 * (value & 0xff);
+        return new String(new char[] { '0', 'x', HEX[index], HEX[index + 1] });
+    }
+
+    public String toString(byte[] bytes) {
+        StringBuilder b = new StringBuilder(bytes.length * 48);
+        try {
+            dump(bytes, b);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);  // StringBuilder does not throw
+        }
+        return b.toString();
+    }
+
+    private static boolean same(byte[] left, byte[] right, int index) {
+        boolean inLeft = index < left.length;
+        boolean inRight = index < right.length;
+        return (inLeft && inRight) ? left[index] == right[index] : inLeft == inRight;
+    }
+
+    // "%4d 0x%04x "
+
+    private void appendOffsets(int offset) {
+        appendDecimal(offset, 4);
+        append(' ');
+        append('0');
+        append('x');
+
+        int digits = Math.max(4, (32 - Integer.numberOfLeadingZeros(offset) + 3) / 4);
+        for (int shift=4 * (digits - 1); shift>=0; shift-=4) {
+            append(DIGITS[(offset >>> shift) & 0xf]);
+        }
+        append(' ');
+    }
+
+    // "%20s "
+
+    private void appendField(int offset) {
+        String field = String.valueOf(m_trace.getField(offset, ""));
+        for (int ii=field.length(); ii<FIELD_WIDTH; ii++) {
+            append(' ');
+        }
+        append(field);
+        append(' ');
+    }
+
+    // "0x%02x", or "----" past the end
+
+    private void appendHex(byte[] bytes, int index) {
+        if (index < bytes.length) {
+            int hex = 2 * (bytes[index] & 0xff);
+            append('0');
+            append('x');
+            append(HEX[hex]);
+            append(HEX[hex + 1]);
+        }
+        else {
+            append("----");
+        }
+    }
+
+    private void appendComment(int offset) {
+        if (m_trace.hasComment(offset))
+            append(String.valueOf(m_trace.getComment(offset)));
+    }
+
+    private void appendDecimal(int n, int width) {
+        int digits = 1;
+        for (int rest=n / 10; rest>0; rest/=10) {
+            digits++;
+        }
+        for (int ii=digits; ii<width; ii++) {
+            append(' ');
+        }
+
+        ensure(digits);
+        for (int ii=m_length + digits - 1; ii>=m_length; ii--) {
+            m_line[ii] = (char) ('0' + n % 10);
+            n /= 10;
+        }
+        m_length += digits;
+    }
+
+    private void append(char c) {
+        ensure(1);
+        m_line[m_length++] = c;
+    }
+
+    private void append(String s) {
+        ensure(s.length());
+        s.getChars(0, s.length(), m_line, m_length);
+        m_length += s.length();
+    }
+
+    private void ensure(int n) {
+        if (m_length + n > m_line.length) {
+            m_line = Arrays.copyOf(m_line, Math.max(m_length + n, 2 * m_line.length));
+            m_wrapped = null;
+        }
+    }
+
+    // Hands the line over without making a String where the Appendable allows it.
+
+    private void flush(Appendable out) throws IOException {
+        if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(m_line, 0, m_length);
+        }
+        else if (out instanceof Writer) {
+            ((Writer) out).write(m_line, 0, m_length);
+        }
+        else {
+            if (null == m_wrapped)
+                m_wrapped = CharBuffer.wrap(m_line);
+            out.append(m_wrapped, 0, m_length);
+        }
+    }
+}
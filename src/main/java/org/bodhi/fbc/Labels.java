@@ -0,0 +1,93 @@
+package org.bodhi.fbc;
+
+import java.util.Arrays;
+
+/**
+ * Labels maps label names to positions without boxing. It is an open addressing table with
+ * linear probing; names are never removed, so no tombstones are needed.
+ */
+final class Labels {
+    private String[] m_names;
+    private int[] m_positions;
+    private int m_size;
+
+    Labels() {
+        this(16);
+    }
+
+    private Labels(int capacity) {
+        m_names = new String[capacity];
+        m_positions = new int[capacity];
+    }
+
+    Labels copy() {
+        Labels result = new Labels(0);
+        result.m_names = Arrays.copyOf(m_names, m_names.length);
+        result.m_positions = Arrays.copyOf(m_positions, m_positions.length);
+        result.m_size = m_size;
+        return result;
+    }
+
+    void clear() {
+        Arrays.fill(m_names, null);
+        m_size = 0;
+    }
+
+    int size() {
+        return m_size;
+    }
+
+    boolean contains(String name) {
+        return null != m_names[slot(m_names, name)];
+    }
+
+    // Returns the position of the name, or -1 when there is none.
+
+    int get(String name) {
+        int slot = slot(m_names, name);
+        return (null == m_names[slot]) ? -1 : m_positions[slot];
+    }
+
+    void put(String name, int position) {
+        int slot = slot(m_names, name);
+
+        if (null == m_names[slot]) {
+            if (2 * (m_size + 1) > m_names.length) {
+                resize(2 * m_names.length);
+                slot = slot(m_names, name);
+            }
+            m_names[slot] = name;
+            m_size++;
+        }
+        m_positions[slot] = position;
+    }
+
+    private void resize(int capacity) {
+        String[] names = m_names;
+        int[] positions = m_positions;
+
+        m_names = new String[capacity];
+        m_positions = new int[capacity];
+
+        for (int ii=0; ii<names.length; ii++) {
+            if (null != names[ii]) {
+                int slot = slot(m_names, names[ii]);
+                m_names[slot] = names[ii];
+                m_positions[slot] = positions[ii];
+            }
+        }
+    }
+
+    // Returns the slot holding name, or the empty slot where it would go. Capacity is a power of two.
+
+    private static int slot(String[] names, String name) {
+        int mask = names.length - 1;
+        int h = name.hashCode();
+        int slot = (h ^ (h >>> 16)) & mask;
+
+        while (null != names[slot] && !names[slot].equals(name)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
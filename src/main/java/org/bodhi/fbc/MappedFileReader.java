@@ -0,0 +1,176 @@
+package org.bodhi.fbc;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.bodhi.fbc.impl.Bytes;
+
+/**
+ * MappedFileReader decodes a capture file through read-only memory maps, so nothing is copied
+ * into the heap and the page cache is shared with any other process reading the same file.
+ *
+ * A ByteBuffer can map at most 2 GB, so the file is mapped one window at a time. When a read
+ * does not fit in the current window, a new window is mapped starting at the read position.
+ * Positions are longs since captures can be far larger than 2 GB.
+ *
+ * The getters are BinaryReader's unnamed ones only. A Trace is indexed by int offsets and
+ * sized to the message, so there is none for the whole file and no named, traced overloads
+ * such as getInt4(name). Use record(length, mode) to get a BinaryReader over one record,
+ * still without copying, when names and dumps are wanted.
+ */
+public class MappedFileReader implements Closeable {
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+    private final FileChannel m_channel;
+    private final long m_size;
+    private final int m_windowSize;
+    private final Charset m_charset;
+    private ByteOrder m_order = ByteOrder.BIG_ENDIAN;
+
+    private MappedByteBuffer m_window;
+    private long m_windowStart;
+    private long m_position;
+
+    public MappedFileReader(Path path, Charset charset) throws IOException {
+        this(path, charset, DEFAULT_WINDOW_SIZE);
+    }
+
+    public MappedFileReader(Path path, Charset charset, int windowSize) throws IOException {
+        m_channel = FileChannel.open(path, StandardOpenOption.READ);
+        m_size = m_channel.size();
+        m_windowSize = windowSize;
+        m_charset = charset;
+    }
+
+    public ByteOrder getByteOrder() {
+        return m_order;
+    }
+
+    public void setByteOrder(ByteOrder order) {
+        m_order = order;
+        if (null != m_window)
+            m_window.order(order);
+    }
+
+    public long size() {
+        return m_size;
+    }
+
+    public long getPosition() {
+        return m_position;
+    }
+
+    // Moves anywhere from the start of the file to its end.
+
+    public void moveToPosition(long offset) {
+        if (offset < 0 || offset > m_size)
+            throw new IndexOutOfBoundsException("Position " + offset + ", file size is " + m_size);
+        m_position = offset;
+    }
+
+    public long available() {
+        return m_size - m_position;
+    }
+
+    public long skip(long n) {
+        if (n < 0 || n > m_size - m_position)
+            throw new IndexOutOfBoundsException("Skip of " + n + " bytes at " + m_position + ", file size is " + m_size);
+        m_position += n;
+        return n;
+    }
+
+    public boolean getBoolean() throws IOException {
+        return 0 != getInt1();
+    }
+
+    public int getInt1() throws IOException {
+        int offset = alloc(1);
+        return m_window.get(offset);
+    }
+
+    public int getUInt1() throws IOException {
+        int offset = alloc(1);
+        return m_window.get(offset) & 0xff;
+    }
+
+    public int getInt2() throws IOException {
+        int offset = alloc(2);
+        return m_window.getShort(offset);
+    }
+
+    public int getUInt2() throws IOException {
+        return getInt2() & 0xffff;
+    }
+
+    public int getInt4() throws IOException {
+        int offset = alloc(4);
+        return m_window.getInt(offset);
+    }
+
+    public long getInt8() throws IOException {
+        int offset = alloc(8);
+        return m_window.getLong(offset);
+    }
+
+    public char getUtfChar() throws IOException {
+        int offset = alloc(2);
+        return m_window.getChar(offset);
+    }
+
+    public byte[] getBytes(int length) throws IOException {
+        byte[] dst = new byte[length];
+        int offset = alloc(length);
+        m_window.get(offset, dst, 0, length);
+        return dst;
+    }
+
+    public String getString(int length) throws IOException {
+        int offset = alloc(length);
+        return Bytes.decode(m_window, offset, length, m_charset);
+    }
+
+    // Returns a reader over the next length bytes, backed by the mapping, and moves past them.
+
+    public BinaryReader record(int length, TraceMode traceMode) throws IOException {
+        int offset = alloc(length);
+        ByteBuffer slice = m_window.slice(offset, length).order(m_order);
+        return new BinaryReader(slice, m_charset, traceMode);
+    }
+
+    public void close() throws IOException {
+        m_window = null;
+        m_channel.close();
+    }
+
+    // Returns the window offset of the next n bytes, mapping a new window if they are not in
+    // the current one, and moves the position past them. Call it before touching m_window.
+
+    private int alloc(int n) throws IOException {
+        if (m_position + n > m_size)
+            throw new EOFException("Need " + n + " bytes at " + m_position + ", file size is " + m_size);
+
+        if (null == m_window || m_position < m_windowStart || m_position + n > m_windowStart + m_window.limit())
+            map(n);
+
+        int result = (int) (m_position - m_windowStart);
+        m_position += n;
+        return result;
+    }
+
+    private void map(int n) throws IOException {
+        if (n > m_windowSize)
+            throw new IOException("Read of " + n + " bytes is larger than the " + m_windowSize + " byte window");
+
+        long length = Math.min(m_windowSize, m_size - m_position);
+        m_window = m_channel.map(FileChannel.MapMode.READ_ONLY, m_position, length);
+        m_window.order(m_order);
+        m_windowStart = m_position;
+    }
+}
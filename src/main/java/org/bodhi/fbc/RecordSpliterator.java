@@ -0,0 +1,204 @@
+package org.bodhi.fbc;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.bodhi.fbc.impl.NioBuffer;
+
+/**
+ * RecordSpliterator decodes the records of a capture in parallel. The input, a byte array or a
+ * ByteBuffer such as a read-only mapping from MappedFileReader, is shared and never copied;
+ * splits fall on record boundaries and each split decodes with its own BinaryReader, so workers
+ * share nothing but the bytes.
+ *
+ * Fixed size records are located by arithmetic. Length prefixed records are indexed by one
+ * pass over the prefixes first, which is cheap next to decoding, and then split evenly.
+ *
+ * Streams are parallel and run in the common ForkJoinPool, or in the pool a terminal operation
+ * is submitted from. Ordered streams return records in file order, unordered ones let
+ * operations like forEach and collect skip the reordering.
+ *
+ * Each split resets one reader onto record after record, so reader positions and traces are
+ * offsets in the record and a FULL trace grows to the longest record, not to the input.
+ */
+public class RecordSpliterator<T> implements Spliterator<T> {
+
+    public interface Decoder<T> {
+        T decode(BinaryReader reader) throws IOException;
+    }
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final byte[] m_bytes;           // one of m_bytes and m_nio is null
+    private final ByteBuffer m_nio;
+    private final int m_recordSize;         // 0 when m_offsets and m_lengths locate records
+    private final int[] m_offsets;
+    private final int[] m_lengths;
+    private final ByteOrder m_order;
+    private final Charset m_charset;
+    private final TraceMode m_traceMode;
+    private final Decoder<T> m_decoder;
+
+    private int m_index;
+    private final int m_end;
+    private BinaryReader m_reader;          // made by the thread that runs this split
+
+    private RecordSpliterator(RecordSpliterator<T> that, int index, int end) {
+        this(that.m_bytes, that.m_nio, that.m_recordSize, that.m_offsets, that.m_lengths,
+             that.m_order, that.m_charset, that.m_traceMode, that.m_decoder, index, end);
+    }
+
+    private RecordSpliterator(byte[] bytes,
+                              ByteBuffer nio,
+                              int recordSize,
+                              int[] offsets,
+                              int[] lengths,
+                              ByteOrder order,
+                              Charset charset,
+                              TraceMode traceMode,
+                              Decoder<T> decoder,
+                              int index,
+                              int end)
+    {
+        m_bytes = bytes;
+        m_nio = nio;
+        m_recordSize = recordSize;
+        m_offsets = offsets;
+        m_lengths = lengths;
+        m_order = order;
+        m_charset = charset;
+        m_traceMode = traceMode;
+        m_decoder = decoder;
+        m_index = index;
+        m_end = end;
+    }
+
+    // Decodes every whole recordSize record in bytes, a trailing partial record is ignored.
+
+    public static <T> Stream<T> fixed(byte[] bytes, int recordSize, ByteOrder order, Charset charset,
+                                      TraceMode traceMode, Decoder<T> decoder, boolean ordered)
+    {
+        return stream(new RecordSpliterator<T>(bytes, null, recordSize, null, null, order, charset,
+                                               traceMode, decoder, 0, bytes.length / recordSize), ordered);
+    }
+
+    public static <T> Stream<T> fixed(ByteBuffer bytes, int recordSize, ByteOrder order, Charset charset,
+                                      TraceMode traceMode, Decoder<T> decoder, boolean ordered)
+    {
+        ByteBuffer shared = bytes.slice();
+        return stream(new RecordSpliterator<T>(null, shared, recordSize, null, null, order, charset,
+                                               traceMode, decoder, 0, shared.remaining() / recordSize), ordered);
+    }
+
+    // Decodes every length prefixed record in bytes, handing the decoder a reader over the
+    // payload only. Input that ends inside a record is an EOFException.
+
+    public static <T> Stream<T> framed(byte[] bytes, FrameDecoder.Prefix prefix, ByteOrder order, boolean inclusive,
+                                       Charset charset, TraceMode traceMode, Decoder<T> decoder, boolean ordered)
+        throws IOException
+    {
+        Index index = new Index();
+        FrameDecoder frames = new FrameDecoder(prefix, order, inclusive);
+
+        frames.decode(bytes, 0, bytes.length, index);
+        if (frames.getPending() > 0)
+            throw new EOFException("Input ends " + frames.getPending() + " bytes into a record");
+
+        return stream(new RecordSpliterator<T>(bytes, null, 0, index.m_offsets, index.m_lengths, order, charset,
+                                               traceMode, decoder, 0, index.m_size), ordered);
+    }
+
+    private static <T> Stream<T> stream(RecordSpliterator<T> spliterator, boolean ordered) {
+        Stream<T> stream = StreamSupport.stream(spliterator, true);
+        return ordered ? stream : stream.unordered();
+    }
+
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (m_index >= m_end)
+            return false;
+        action.accept(decode(m_index++));
+        return true;
+    }
+
+    public void forEachRemaining(Consumer<? super T> action) {
+        int end = m_end;
+        for (int ii=m_index; ii<end; ii++) {
+            action.accept(decode(ii));
+        }
+        m_index = end;
+    }
+
+    // Halves the remaining records, the prefix goes to the new spliterator.
+
+    public Spliterator<T> trySplit() {
+        int mid = (m_index + m_end) >>> 1;
+        if (mid <= m_index)
+            return null;
+
+        RecordSpliterator<T> prefix = new RecordSpliterator<T>(this, m_index, mid);
+        m_index = mid;
+        return prefix;
+    }
+
+    public long estimateSize() {
+        return m_end - m_index;
+    }
+
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | IMMUTABLE;
+    }
+
+    private T decode(int record) {
+        int offset = (m_recordSize > 0) ? record * m_recordSize : m_offsets[record];
+        int length = (m_recordSize > 0) ? m_recordSize : m_lengths[record];
+
+        try {
+            return m_decoder.decode(reader(offset, length));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Record " + record + " at " + offset, e);
+        }
+    }
+
+    private BinaryReader reader(int offset, int length) {
+        if (null != m_nio) {
+            if (null == m_reader)
+                m_reader = new BinaryReader(new NioBuffer(m_nio, m_order), m_charset, m_traceMode);
+            m_reader.reset(offset, length);
+        }
+        else {
+            if (null == m_reader)
+                m_reader = new BinaryReader(EMPTY, m_charset, m_order, m_traceMode);
+            m_reader.reset(m_bytes, offset, length);
+        }
+        return m_reader;
+    }
+
+    // Collects payload offsets and lengths from a FrameDecoder.
+
+    private static class Index implements FrameDecoder.Handler {
+        private int[] m_offsets = new int[1024];
+        private int[] m_lengths = new int[1024];
+        private int m_size;
+
+        public void onFrames(FrameDecoder.Batch batch) {
+            while (m_size + batch.size() > m_offsets.length) {
+                m_offsets = Arrays.copyOf(m_offsets, 2 * m_offsets.length);
+                m_lengths = Arrays.copyOf(m_lengths, m_offsets.length);
+            }
+            for (int ii=0; ii<batch.size(); ii++) {
+                m_offsets[m_size] = batch.getOffset(ii);
+                m_lengths[m_size] = batch.getLength(ii);
+                m_size++;
+            }
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package org.bodhi.fbc;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.charset.Charset;
+
+/**
+ * StreamingBinaryReader decodes from an InputStream or ReadableByteChannel through one fixed
+ * size window, so memory stays bounded however long the stream is. When a read needs more
+ * bytes than the window holds, the unread bytes are moved to the front and the rest of the
+ * window is filled from the source.
+ *
+ * Bytes are gone once read, so there are no comments or dumps. Named reads label their field,
+ * unless the mode is OFF, with positions relative to the last beginRecord(). For a full trace
+ * of one record, use record(length, mode).
+ *
+ * Reads block until the bytes they need have arrived, so a channel must be in blocking mode.
+ */
+public class StreamingBinaryReader implements Closeable {
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024;
+
+    private final InputStream m_in;          // one of m_in and m_channel is null
+    private final ReadableByteChannel m_channel;
+    private final Charset m_charset;
+    private final TraceMode m_traceMode;
+    private final Labels m_labels = new Labels();
+
+    private final byte[] m_bytes;
+    private final ByteBuffer m_window;       // m_bytes, for multi byte reads in the current order
+    private final ByteBuffer m_fill;         // m_bytes, for channel reads
+    private int m_start;                     // next unread byte in m_bytes
+    private int m_end;                       // end of the bytes read from the source
+
+    private long m_position;                 // stream offset of m_start
+    private long m_recordStart;
+
+    public StreamingBinaryReader(InputStream in, Charset charset) {
+        this(in, charset, TraceMode.LABELS_ONLY, DEFAULT_WINDOW_SIZE);
+    }
+
+    public StreamingBinaryReader(InputStream in, Charset charset, TraceMode traceMode, int windowSize) {
+        this(in, null, charset, traceMode, windowSize);
+    }
+
+    public StreamingBinaryReader(ReadableByteChannel channel, Charset charset) {
+        this(channel, charset, TraceMode.LABELS_ONLY, DEFAULT_WINDOW_SIZE);
+    }
+
+    public StreamingBinaryReader(ReadableByteChannel channel, Charset charset, TraceMode traceMode, int windowSize) {
+        this(null, blocking(channel), charset, traceMode, windowSize);
+    }
+
+    // A non-blocking channel returns 0 until data arrives, and fill() would spin on it.
+
+    private static ReadableByteChannel blocking(ReadableByteChannel channel) {
+        if (channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking())
+            throw new IllegalArgumentException("Channel is in non-blocking mode");
+        return channel;
+    }
+
+    private StreamingBinaryReader(InputStream in,
+                                  ReadableByteChannel channel,
+                                  Charset charset,
+                                  TraceMode traceMode,
+                                  int windowSize)
+    {
+        m_in = in;
+        m_channel = channel;
+        m_charset = charset;
+        m_traceMode = traceMode;
+        m_bytes = new byte[Math.max(windowSize, 16)];
+        m_window = ByteBuffer.wrap(m_bytes);
+        m_fill = ByteBuffer.wrap(m_bytes);
+    }
+
+    public TraceMode getTraceMode() {
+        return m_traceMode;
+    }
+
+    public ByteOrder getByteOrder() {
+        return m_window.order();
+    }
+
+    public void setByteOrder(ByteOrder order) {
+        m_window.order(order);
+    }
+
+    public int getWindowSize() {
+        return m_bytes.length;
+    }
+
+    // Returns the number of bytes read from the stream so far.
+
+    public long getPosition() {
+        return m_position;
+    }
+
+    // Returns true when there is at least one more byte, reading from the source if needed.
+
+    public boolean hasRemaining() throws IOException {
+        return m_end > m_start || fill(1);
+    }
+
+    // Starts a record here, labels from now on are relative to it and earlier ones are dropped.
+
+    public void beginRecord() {
+        m_recordStart = m_position;
+        m_labels.clear();
+    }
+
+    public void label(String name) {
+        if (m_traceMode != TraceMode.OFF)
+            m_labels.put(name, (int) (m_position - m_recordStart));
+    }
+
+    // Returns the offset of the label from the start of the record.
+
+    public int getPosition(String name) {
+        int position = m_labels.get(name);
+        if (position < 0)
+            throw new IllegalArgumentException("No position defined for " + name);
+        return position;
+    }
+
+    public long skip(long n) throws IOException {
+        long remaining = n;
+
+        while (remaining > 0) {
+            if (m_end == m_start)
+                require(1);
+            int step = (int) Math.min(remaining, m_end - m_start);
+            m_start += step;
+            m_position += step;
+            remaining -= step;
+        }
+        return n;
+    }
+
+    public boolean getBoolean() throws IOException {
+        return 0 != getInt1();
+    }
+
+    public boolean getBoolean(String name) throws IOException {
+        label(name);
+        return getBoolean();
+    }
+
+    public int getInt1() throws IOException {
+        return m_bytes[alloc(1)];
+    }
+
+    public int getInt1(String name) throws IOException {
+        label(name);
+        return getInt1();
+    }
+
+    public int getUInt1() throws IOException {
+        return m_bytes[alloc(1)] & 0xff;
+    }
+
+    public int getInt2() throws IOException {
+        return m_window.getShort(alloc(2));
+    }
+
+    public int getInt2(String name) throws IOException {
+        label(name);
+        return getInt2();
+    }
+
+    public int getUInt2() throws IOException {
+        return getInt2() & 0xffff;
+    }
+
+    public int getUInt2(String name) throws IOException {
+        label(name);
+        return getUInt2();
+    }
+
+    public int getInt4() throws IOException {
+        return m_window.getInt(alloc(4));
+    }
+
+    public int getInt4(String name) throws IOException {
+        label(name);
+        return getInt4();
+    }
+
+    public long getInt8() throws IOException {
+        return m_window.getLong(alloc(8));
+    }
+
+    public long getInt8(String name) throws IOException {
+        label(name);
+        return getInt8();
+    }
+
+    public char getUtfChar() throws IOException {
+        return m_window.getChar(alloc(2));
+    }
+
+    public char getUtfChar(String name) throws IOException {
+        label(name);
+        return getUtfChar();
+    }
+
+    public byte[] getBytes(int length, String name) throws IOException {
+        label(name);
+        byte[] dst = new byte[length];
+        getBytes(dst, 0, length);
+        return dst;
+    }
+
+    // Copies length bytes into dst, which may be more than the window holds.
+
+    public int getBytes(byte[] dst, int offset, int length) throws IOException {
+        int done = 0;
+
+        while (done < length) {
+            if (m_end == m_start)
+                require(1);
+            int step = Math.min(length - done, m_end - m_start);
+            System.arraycopy(m_bytes, m_start, dst, offset + done, step);
+            m_start += step;
+            m_position += step;
+            done += step;
+        }
+        return length;
+    }
+
+    public String getString(int length) throws IOException {
+        int offset = alloc(length);
+        return new String(m_bytes, offset, length, m_charset).trim();
+    }
+
+    public String getString(int length, String name) throws IOException {
+        label(name);
+        return getString(length);
+    }
+
+    // Returns a reader over the next length bytes and moves past them. The reader works on the
+    // window, so it is only valid until the next read from this stream.
+
+    public BinaryReader record(int length, TraceMode traceMode) throws IOException {
+        int offset = alloc(length);
+        ByteBuffer slice = m_window.slice(offset, length).order(m_window.order());
+        return new BinaryReader(slice, m_charset, traceMode);
+    }
+
+    public void close() throws IOException {
+        if (null != m_in)
+            m_in.close();
+        else
+            m_channel.close();
+    }
+
+    // Returns the window offset of the next n bytes, reading them if needed, and moves past them.
+
+    private int alloc(int n) throws IOException {
+        if (m_end - m_start < n)
+            require(n);
+
+        int result = m_start;
+        m_start += n;
+        m_position += n;
+        return result;
+    }
+
+    private void require(int n) throws IOException {
+        if (n > m_bytes.length)
+            throw new IOException("Read of " + n + " bytes is larger than the " + m_bytes.length + " byte window");
+
+        if (!fill(n))
+            throw new EOFException("Need " + n + " bytes at " + m_position + ", stream has " + (m_end - m_start));
+    }
+
+    // Compacts the window and reads until it holds n unread bytes, false at end of stream.
+
+    private boolean fill(int n) throws IOException {
+        if (m_start > 0) {
+            System.arraycopy(m_bytes, m_start, m_bytes, 0, m_end - m_start);
+            m_end -= m_start;
+            m_start = 0;
+        }
+
+        while (m_end < n) {
+            int count;
+
+            if (null != m_in) {
+                count = m_in.read(m_bytes, m_end, m_bytes.length - m_end);
+            }
+            else {
+                m_fill.limit(m_bytes.length).position(m_end);
+                count = m_channel.read(m_fill);
+            }
+
+            if (count < 0)
+                return false;
+            m_end += count;
+        }
+        return true;
+    }
+}
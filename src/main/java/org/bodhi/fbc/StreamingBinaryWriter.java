@@ -0,0 +1,312 @@
+package org.bodhi.fbc;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import org.bodhi.fbc.impl.Buffer;
+
+/**
+ * StreamingBinaryWriter encodes into one fixed size window and writes it to an OutputStream or
+ * WritableByteChannel whenever the next value does not fit, so exports of any length run in
+ * constant memory and bytes are never copied into a growing array.
+ *
+ * Named writes label their field, unless the mode is OFF, with positions relative to the last
+ * beginRecord(). replaceInt4 back-patches a labelled field as long as it is still in the
+ * window. A full window only writes out the records before the current one, so any record
+ * that fits in the window can be patched until flush() is called.
+ */
+public class StreamingBinaryWriter implements Closeable, Flushable {
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024;
+
+    private final OutputStream m_out;          // one of m_out and m_channel is null
+    private final WritableByteChannel m_channel;
+    private final Charset m_charset;
+    private final TraceMode m_traceMode;
+    private final Labels m_labels = new Labels();
+
+    private final byte[] m_bytes;
+    private final Buffer m_buffer;             // m_bytes, never grows
+    private final ByteBuffer m_drain;          // m_bytes, for channel writes
+    private final ByteBuffer[] m_gather = new ByteBuffer[2];
+    private byte m_padding = ' ';
+
+    private long m_flushed;                    // stream offset of m_bytes[0]
+    private long m_recordStart;
+
+    public StreamingBinaryWriter(OutputStream out, Charset charset) {
+        this(out, charset, TraceMode.LABELS_ONLY, DEFAULT_WINDOW_SIZE);
+    }
+
+    public StreamingBinaryWriter(OutputStream out, Charset charset, TraceMode traceMode, int windowSize) {
+        this(out, null, charset, traceMode, windowSize);
+    }
+
+    public StreamingBinaryWriter(WritableByteChannel channel, Charset charset) {
+        this(channel, charset, TraceMode.LABELS_ONLY, DEFAULT_WINDOW_SIZE);
+    }
+
+    public StreamingBinaryWriter(WritableByteChannel channel, Charset charset, TraceMode traceMode, int windowSize) {
+        this(null, channel, charset, traceMode, windowSize);
+    }
+
+    private StreamingBinaryWriter(OutputStream out,
+                                  WritableByteChannel channel,
+                                  Charset charset,
+                                  TraceMode traceMode,
+                                  int windowSize)
+    {
+        m_out = out;
+        m_channel = channel;
+        m_charset = charset;
+        m_traceMode = traceMode;
+        m_bytes = new byte[Math.max(windowSize, 16)];
+        m_buffer = new Buffer(m_bytes);
+        m_drain = ByteBuffer.wrap(m_bytes);
+    }
+
+    public TraceMode getTraceMode() {
+        return m_traceMode;
+    }
+
+    public ByteOrder getByteOrder() {
+        return m_buffer.getByteOrder();
+    }
+
+    public void setByteOrder(ByteOrder order) {
+        m_buffer.setByteOrder(order);
+    }
+
+    public byte getPadding() {
+        return m_padding;
+    }
+
+    public void setPadding(byte padding) {
+        m_padding = padding;
+    }
+
+    public int getWindowSize() {
+        return m_bytes.length;
+    }
+
+    // Returns the number of bytes written so far, flushed or not.
+
+    public long getPosition() {
+        return m_flushed + m_buffer.getPosition();
+    }
+
+    // Starts a record here, labels from now on are relative to it and earlier ones are dropped.
+
+    public void beginRecord() {
+        m_recordStart = getPosition();
+        m_labels.clear();
+    }
+
+    public void label(String name) {
+        if (m_traceMode != TraceMode.OFF)
+            m_labels.put(name, (int) (getPosition() - m_recordStart));
+    }
+
+    // Returns the offset of the label from the start of the record.
+
+    public int getPosition(String name) {
+        int position = m_labels.get(name);
+        if (position < 0)
+            throw new IllegalArgumentException("No position defined for " + name);
+        return position;
+    }
+
+    public int diff(String name1, String name2) {
+        return getPosition(name1) - getPosition(name2);
+    }
+
+    public void putBoolean(boolean b) throws IOException {
+        putInt1(b ? 1 : 0);
+    }
+
+    public void putBoolean(boolean b, String name) throws IOException {
+        label(name);
+        putBoolean(b);
+    }
+
+    public void putUtfChar(char c) throws IOException {
+        ensure(2);
+        m_buffer.putUtfChar(c);
+    }
+
+    public void putUtfChar(char c, String name) throws IOException {
+        label(name);
+        putUtfChar(c);
+    }
+
+    public void putInt1(int n) throws IOException {
+        ensure(1);
+        m_buffer.putInt1(n);
+    }
+
+    public void putInt1(int n, String name) throws IOException {
+        label(name);
+        putInt1(n);
+    }
+
+    public void putInt2(int n) throws IOException {
+        ensure(2);
+        m_buffer.putInt2(n);
+    }
+
+    public void putInt2(int n, String name) throws IOException {
+        label(name);
+        putInt2(n);
+    }
+
+    public void putUInt2(int n) throws IOException {
+        putInt2(n);
+    }
+
+    public void putUInt2(int n, String name) throws IOException {
+        label(name);
+        putUInt2(n);
+    }
+
+    public void putInt4(int n) throws IOException {
+        ensure(4);
+        m_buffer.putInt4(n);
+    }
+
+    public void putInt4(int n, String name) throws IOException {
+        label(name);
+        putInt4(n);
+    }
+
+    public void putInt8(long n) throws IOException {
+        ensure(8);
+        m_buffer.putInt8(n);
+    }
+
+    public void putInt8(long n, String name) throws IOException {
+        label(name);
+        putInt8(n);
+    }
+
+    // Bytes that do not fit in the window go out with it in one write, gathering when the
+    // channel supports it, rather than being copied through the window.
+
+    public void putBytes(byte[] bytes, int offset, int length) throws IOException {
+        if (length <= m_buffer.available()) {
+            m_buffer.putBytes(bytes, offset, length);
+        }
+        else if (length <= m_bytes.length / 2) {
+            ensure(length);
+            m_buffer.putBytes(bytes, offset, length);
+        }
+        else {
+            write(ByteBuffer.wrap(bytes, offset, length));
+        }
+    }
+
+    public void putBytes(byte[] bytes, String name) throws IOException {
+        label(name);
+        putBytes(bytes, 0, bytes.length);
+    }
+
+    public void putString(CharSequence s, int length) throws IOException {
+        ensure(length);
+        m_buffer.putString(s, length, m_charset, m_padding);
+    }
+
+    public void putString(String s, int length, String name) throws IOException {
+        label(name);
+        putString(s, length);
+    }
+
+    // Overwrites a labelled SInt4, which must not have been flushed yet.
+
+    public void replaceInt4(String name, int n) {
+        long offset = m_recordStart + getPosition(name) - m_flushed;
+
+        if (offset < 0)
+            throw new IllegalStateException(name + " was flushed, the window is too small to patch it");
+        m_buffer.putInt4((int) offset, n);
+    }
+
+    public void flush() throws IOException {
+        write(null);
+        if (null != m_out)
+            m_out.flush();
+    }
+
+    public void close() throws IOException {
+        try {
+            flush();
+        }
+        finally {
+            if (null != m_out)
+                m_out.close();
+            else
+                m_channel.close();
+        }
+    }
+
+    // Makes room for n bytes. Only the records before the current one are written when that is
+    // enough, so the current record stays in the window where it can be patched.
+
+    private void ensure(int n) throws IOException {
+        if (m_buffer.available() < n) {
+            if (n > m_bytes.length)
+                throw new IOException("Write of " + n + " bytes is larger than the " + m_bytes.length + " byte window");
+
+            int record = (int) Math.max(0, m_recordStart - m_flushed);
+            if (record > 0 && m_buffer.getPosition() - record + n <= m_bytes.length)
+                write(record, null);
+            else
+                write(null);
+        }
+    }
+
+    private void write(ByteBuffer extra) throws IOException {
+        write(m_buffer.getPosition(), extra);
+    }
+
+    // Writes the first length bytes of the window followed by extra, when not null, and moves
+    // what is left of the window to the front.
+
+    private void write(int length, ByteBuffer extra) throws IOException {
+        int extraLength = (null == extra) ? 0 : extra.remaining();
+
+        if (null != m_out) {
+            m_out.write(m_bytes, 0, length);
+            if (null != extra)
+                m_out.write(extra.array(), extra.arrayOffset() + extra.position(), extraLength);
+        }
+        else {
+            m_drain.limit(length).position(0);
+
+            if (null != extra && m_channel instanceof GatheringByteChannel) {
+                m_gather[0] = m_drain;
+                m_gather[1] = extra;
+                while (extra.hasRemaining()) {
+                    ((GatheringByteChannel) m_channel).write(m_gather);
+                }
+                m_gather[1] = null;
+            }
+            else {
+                while (m_drain.hasRemaining()) {
+                    m_channel.write(m_drain);
+                }
+                while (null != extra && extra.hasRemaining()) {
+                    m_channel.write(extra);
+                }
+            }
+        }
+
+        int kept = m_buffer.getPosition() - length;
+        System.arraycopy(m_bytes, length, m_bytes, 0, kept);
+        m_buffer.setPosition(kept);
+        m_flushed += length + extraLength;
+    }
+}
@@ -1,47 +1,142 @@
 package org.bodhi.fbc;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Trace keeps track of labels and comments attached to positions in a byte array.
  * labels: are alias for a position. There can be multiple labels for the same position.
  * fields: are labels, but they are one to one with a position. You can think of them as the "main" label.
- * comments: are one to one with position. The contain free form text.
+ * comments: are one to one with position. They are either free form text or the type, width and
+ *           value of a field, which are only formatted into text when the comment is read.
+ *
+ * Storage is primitive arrays rather than maps. An offset indexed table, grown as far as the
+ * highest traced position, points at an entry; entries hold the field and comment facts in parallel arrays. Copies share
+ * the arrays until one side is modified, so getTrace() on a reader or writer is cheap.
  */
 public class Trace {
-    private final Map<String, Integer> m_labels; // map names -> positions
-    private final Map<Integer, String> m_fields;     // map positions -> names
-    private final Map<Integer, String> m_comments;     // map positions -> names
+    private static final int NONE = 0;
+    private static final int MAX_INITIAL = 4096;    // positions in the table before it has to grow
+
+    private Labels m_labels;        // map names -> positions
+    private int[] m_entries;        // map positions -> entry + 1, NONE when nothing is traced
+
+    // Entries, one per traced position, in the order they were traced.
+
+    private int m_count;
+    private int[] m_positions;
+    private String[] m_fields;
+    private FieldType[] m_types;    // null for free form text
+    private int[] m_widths;
+    private long[] m_values;
+    private boolean[] m_hasValues;
+    private String[] m_texts;       // string value, or the free form text
+    private String[] m_appended;
+
+    private boolean m_shared;       // arrays are shared with a copy, clone before writing
 
     public Trace() {
-        this(new HashMap<String, Integer>(),
-             new HashMap<Integer, String>(),
-             new HashMap<Integer, String>());
+        this(32);
     }
 
-    private Trace(Map<String, Integer> labels,
-                  Map<Integer, String> fields,
-                  Map<Integer, String> comments)
-    {
-        m_labels = labels;
-        m_fields = fields;
-        m_comments = comments;
+    // Capacity is a hint, the expected size of the traced buffer. The table starts at most
+    // MAX_INITIAL positions long, so a large buffer costs nothing until its fields are traced.
+
+    public Trace(int capacity) {
+        m_labels = new Labels();
+        m_entries = new int[Math.min(Math.max(capacity, 16), MAX_INITIAL)];
+        allocateEntries(16);
+    }
+
+    private Trace(Trace that) {
+        m_labels = that.m_labels;
+        m_entries = that.m_entries;
+        m_count = that.m_count;
+        m_positions = that.m_positions;
+        m_fields = that.m_fields;
+        m_types = that.m_types;
+        m_widths = that.m_widths;
+        m_values = that.m_values;
+        m_hasValues = that.m_hasValues;
+        m_texts = that.m_texts;
+        m_appended = that.m_appended;
+        m_shared = true;
     }
 
     public Trace copy() {
-        return new Trace(new HashMap<String, Integer>(m_labels),
-                         new HashMap<Integer, String>(m_fields),
-                         new HashMap<Integer, String>(m_comments));
+        m_shared = true;
+        return new Trace(this);
+    }
+
+    // Forgets every label and entry but keeps the arrays, so a reused reader or writer traces
+    // the next message without allocating. Copies handed out earlier are not affected.
+
+    public void clear() {
+        if (m_shared) {
+            m_shared = false;
+            m_labels = new Labels();
+            m_entries = new int[m_entries.length];
+            allocateEntries(m_positions.length);
+        }
+        else {
+            m_labels.clear();
+            for (int ii=0; ii<m_count; ii++) {
+                m_entries[m_positions[ii]] = NONE;
+            }
+            Arrays.fill(m_fields, 0, m_count, null);
+            Arrays.fill(m_types, 0, m_count, null);
+            Arrays.fill(m_texts, 0, m_count, null);
+            Arrays.fill(m_appended, 0, m_count, null);
+        }
+        m_count = 0;
     }
 
     public void trace(int position, String field, String comment) {
-        label(position, field);
-        m_fields.put(position, field);
-        m_comments.put(position, comment);
+        int entry = entry(position, field, null, -1);
+        m_texts[entry] = comment;
+    }
+
+    // Traces a typed field. The comment text is built from these facts only when it is read.
+
+    public void trace(int position, String field, FieldType type, int width) {
+        entry(position, field, type, width);
+    }
+
+    public void trace(int position, String field, FieldType type, int width, long value) {
+        int entry = entry(position, field, type, width);
+        m_values[entry] = value;
+        m_hasValues[entry] = true;
+    }
+
+    public void trace(int position, String field, FieldType type, int width, String value) {
+        int entry = entry(position, field, type, width);
+        m_texts[entry] = value;
+        m_hasValues[entry] = true;
+    }
+
+    // Records the value of a field traced before it was decoded.
+
+    public void setValue(int position, long value) {
+        int entry = find(position);
+        if (entry >= 0) {
+            unshare();
+            m_values[entry] = value;
+            m_hasValues[entry] = true;
+        }
+    }
+
+    public void setValue(int position, String value) {
+        int entry = find(position);
+        if (entry >= 0) {
+            unshare();
+            m_texts[entry] = value;
+            m_hasValues[entry] = true;
+        }
     }
 
     public void label(int position, String field) {
+        unshare();
         m_labels.put(field, position);
     }
 
@@ -49,18 +144,23 @@ public class Trace {
     // Returns byte offset to the named position
 
     public int getPosition(String label) {
-        assert m_labels.containsKey(label) : "No position defined for " + label;
-        return m_labels.get(label);
+        assert m_labels.contains(label) : "No position defined for " + label;
+
+        int position = m_labels.get(label);
+        if (position < 0)
+            throw new IllegalArgumentException("No position defined for " + label);
+        return position;
     }
 
 
 
     public boolean hasComment(int position) {
-        return m_comments.containsKey(position);
+        return find(position) >= 0;
     }
 
     public String getComment(int position) {
-        return m_comments.get(position);
+        int entry = find(position);
+        return (entry < 0) ? null : comment(entry);
     }
 
     public String getComment(int position, String defaultValue) {
@@ -71,18 +171,28 @@ public class Trace {
     }
 
     public void appendComment(int position, String s) {
-        String newComment = getComment(position, "") + s;
-        m_comments.put(position, newComment);
+        int entry = find(position);
+
+        if (entry < 0) {
+            entry = entry(position, null, null, -1);
+            m_texts[entry] = s;
+        }
+        else {
+            unshare();
+            m_appended[entry] = (null == m_appended[entry]) ? s : m_appended[entry] + s;
+        }
     }
 
 
 
     public boolean hasField(int position) {
-        return m_fields.containsKey(position);
+        int entry = find(position);
+        return entry >= 0 && null != m_fields[entry];
     }
 
     public String getField(int position) {
-        return m_fields.get(position);
+        int entry = find(position);
+        return (entry < 0) ? null : m_fields[entry];
     }
 
     public String getField(int position, String defaultValue) {
@@ -91,4 +201,182 @@ public class Trace {
         else
             return defaultValue;
     }
+
+    // Returns the named fields in position order, a snapshot of the trace as it is now.
+
+    public List<Field> getFields() {
+        List<Field> fields = new ArrayList<>(m_count);
+        boolean sorted = true;
+
+        for (int ii=0; ii<m_count; ii++) {
+            if (null == m_fields[ii])
+                continue;
+
+            Field field = new Field(m_positions[ii], m_fields[ii], m_types[ii], m_widths[ii],
+                                    m_hasValues[ii], m_values[ii], m_texts[ii]);
+            sorted &= fields.isEmpty() || fields.get(fields.size() - 1).m_position < field.m_position;
+            fields.add(field);
+        }
+
+        if (!sorted)
+            fields.sort((a, b) -> Integer.compare(a.m_position, b.m_position));
+        return fields;
+    }
+
+    private String comment(int entry) {
+        FieldType type = m_types[entry];
+        String appended = m_appended[entry];
+
+        if (null == type && null == appended)
+            return m_texts[entry];
+
+        StringBuilder b = new StringBuilder();
+
+        if (null == type)
+            b.append(m_texts[entry]);
+        else
+            type.appendComment(b, m_widths[entry], m_hasValues[entry], m_values[entry], m_texts[entry]);
+
+        if (null != appended)
+            b.append(appended);
+
+        return b.toString();
+    }
+
+    private int find(int position) {
+        return (position >= 0 && position < m_entries.length) ? m_entries[position] - 1 : -1;
+    }
+
+    // Returns the entry for position, reset to the given facts. Tracing a position twice
+    // replaces the earlier entry, as the maps this replaced did.
+
+    private int entry(int position, String field, FieldType type, int width) {
+        unshare();
+
+        if (null != field)
+            m_labels.put(field, position);
+
+        if (position >= m_entries.length)
+            m_entries = Arrays.copyOf(m_entries, Math.max(position + 1, 2 * m_entries.length));
+
+        int entry = m_entries[position] - 1;
+
+        if (entry < 0) {
+            if (m_count == m_positions.length)
+                growEntries(2 * m_count);
+
+            entry = m_count++;
+            m_entries[position] = entry + 1;
+            m_positions[entry] = position;
+        }
+
+        m_fields[entry] = field;
+        m_types[entry] = type;
+        m_widths[entry] = width;
+        m_values[entry] = 0;
+        m_hasValues[entry] = false;
+        m_texts[entry] = null;
+        m_appended[entry] = null;
+        return entry;
+    }
+
+    private void allocateEntries(int capacity) {
+        m_positions = new int[capacity];
+        m_fields = new String[capacity];
+        m_types = new FieldType[capacity];
+        m_widths = new int[capacity];
+        m_values = new long[capacity];
+        m_hasValues = new boolean[capacity];
+        m_texts = new String[capacity];
+        m_appended = new String[capacity];
+    }
+
+    private void growEntries(int capacity) {
+        m_positions = Arrays.copyOf(m_positions, capacity);
+        m_fields = Arrays.copyOf(m_fields, capacity);
+        m_types = Arrays.copyOf(m_types, capacity);
+        m_widths = Arrays.copyOf(m_widths, capacity);
+        m_values = Arrays.copyOf(m_values, capacity);
+        m_hasValues = Arrays.copyOf(m_hasValues, capacity);
+        m_texts = Arrays.copyOf(m_texts, capacity);
+        m_appended = Arrays.copyOf(m_appended, capacity);
+    }
+
+    // Copy on write: the first change after copy() clones the arrays with bulk copies.
+
+    private void unshare() {
+        if (m_shared) {
+            m_shared = false;
+            m_labels = m_labels.copy();
+            m_entries = m_entries.clone();
+            growEntries(m_positions.length);
+        }
+    }
+
+    /**
+     * The facts traced for one field. Width is -1 when it was not traced, and the value is only
+     * there when the field was traced with one.
+     */
+    public static final class Field {
+        private final int m_position;
+        private final String m_name;
+        private final FieldType m_type;
+        private final int m_width;
+        private final boolean m_hasValue;
+        private final long m_value;
+        private final String m_text;
+
+        Field(int position, String name, FieldType type, int width, boolean hasValue, long value, String text) {
+            m_position = position;
+            m_name = name;
+            m_type = type;
+            m_width = width;
+            m_hasValue = hasValue;
+            m_value = value;
+            m_text = text;
+        }
+
+        public int getPosition() {
+            return m_position;
+        }
+
+        public String getName() {
+            return m_name;
+        }
+
+        // Null for a field traced with free form text.
+
+        public FieldType getType() {
+            return m_type;
+        }
+
+        public int getWidth() {
+            return m_width;
+        }
+
+        public boolean hasValue() {
+            return m_hasValue;
+        }
+
+        public long getValue() {
+            return m_value;
+        }
+
+        // The value as the comment shows it, e.g. 25, true or 'abc', or null without one.
+
+        public String getValueString() {
+            if (!m_hasValue || null == m_type)
+                return null;
+
+            StringBuilder b = new StringBuilder();
+            m_type.appendValue(b, m_value, m_text);
+            return b.toString();
+        }
+
+        // The free form text for untyped fields, the string value for STRING ones.
+
+        public String getText() {
+            return m_text;
+        }
+    }
 }
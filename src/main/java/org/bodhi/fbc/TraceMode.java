@@ -0,0 +1,26 @@
+package org.bodhi.fbc;
+
+/**
+ * TraceMode is chosen when a BinaryReader or BinaryWriter is constructed and decides how much
+ * of the Trace the named calls (getInt4(name), putString(s, length, name), ...) record. It can
+ * be switched between messages, which is how TraceSampler traces only some of them.
+ */
+public enum TraceMode {
+
+    /**
+     * Nothing is recorded. Named calls cost the same as the unnamed ones, labels are ignored
+     * and getPosition/diff have nothing to work with.
+     */
+    OFF,
+
+    /**
+     * Only label positions are recorded, so getPosition, diff and replaceInt4 keep working.
+     * No fields or comments are kept for dumps.
+     */
+    LABELS_ONLY,
+
+    /**
+     * Labels, fields and comments are all recorded. This is the default.
+     */
+    FULL
+}
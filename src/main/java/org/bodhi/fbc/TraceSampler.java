@@ -0,0 +1,235 @@
+package org.bodhi.fbc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * TraceSampler records a full Trace for a few messages only: one in every N, those whose bytes
+ * match a predicate, and those whose decoding or encoding throws. Other messages run with the
+ * reader's or writer's own TraceMode, usually OFF or LABELS_ONLY, and cost a countdown and a
+ * null check more than without a sampler. Once traced messages have run, the JIT keeps the
+ * tracing branches of the reader compiled in, so untraced messages cost what they do in any
+ * process that mixes trace modes.
+ *
+ * Failures are exceptions and the AssertionError a Buffer overrun raises with assertions on.
+ * A message that fails without having been sampled is run again with TraceMode.FULL to get
+ * its trace, so decoders and encoders should have no side effects beyond the reader or
+ * writer. Samples go to a TraceSink on the calling thread; an AsyncTraceSink keeps that from
+ * blocking.
+ *
+ * Like readers and writers, a sampler belongs to one thread. Threads can share the sink.
+ */
+public class TraceSampler {
+
+    public enum Reason {
+        SAMPLED,
+        MATCHED,
+        FAILED
+    }
+
+    public interface Match {
+        boolean test(byte[] bytes, int offset, int length);
+    }
+
+    public interface Encoder {
+        void encode(BinaryWriter writer) throws IOException;
+    }
+
+    private final int m_every;          // 0 for no 1 in N sampling
+    private final Match m_match;        // null for none
+    private final boolean m_onFailure;
+    private final TraceSink m_sink;
+    private int m_countdown;
+
+    // Also traces failures, so every message runs inside a try with the reader's or writer's
+    // trace mode saved and restored. Pass onFailure = false for the fast path, which costs a
+    // countdown and a null check only.
+
+    public TraceSampler(int every, TraceSink sink) {
+        this(every, null, true, sink);
+    }
+
+    // Traces one message in every, those match accepts and, with onFailure, those that throw.
+    // The match only applies to decoding, where the bytes are known before the work starts.
+
+    public TraceSampler(int every, Match match, boolean onFailure, TraceSink sink) {
+        m_every = Math.max(every, 0);
+        m_match = match;
+        m_onFailure = onFailure;
+        m_sink = sink;
+        m_countdown = m_every;
+    }
+
+    public <T> T decode(BinaryReader reader, byte[] bytes, RecordSpliterator.Decoder<T> decoder) throws IOException {
+        return decode(reader, bytes, 0, bytes.length, decoder);
+    }
+
+    // Resets the reader onto the message and decodes it, traced if it is sampled.
+
+    public <T> T decode(BinaryReader reader, byte[] bytes, int offset, int length, RecordSpliterator.Decoder<T> decoder)
+        throws IOException
+    {
+        Reason reason = countdown() ? Reason.SAMPLED
+                      : (null != m_match && m_match.test(bytes, offset, length)) ? Reason.MATCHED
+                      : null;
+        if (null == reason && !m_onFailure) {
+            reader.reset(bytes, offset, length);
+            return decoder.decode(reader);
+        }
+
+        TraceMode mode = reader.getTraceMode();
+        try {
+            if (null != reason)
+                reader.setTraceMode(TraceMode.FULL);
+            reader.reset(bytes, offset, length);
+
+            T result;
+            try {
+                result = decoder.decode(reader);
+            }
+            catch (IOException | RuntimeException | AssertionError e) {
+                if (m_onFailure) {
+                    if (null == reason) {
+                        reader.setTraceMode(TraceMode.FULL);
+                        reader.reset(bytes, offset, length);
+                        retry(() -> decoder.decode(reader));
+                    }
+                    publish(Reason.FAILED, reader.getTrace(), Arrays.copyOfRange(bytes, offset, offset + length), e);
+                }
+                throw e;
+            }
+
+            if (null != reason)
+                publish(reason, reader.getTrace(), Arrays.copyOfRange(bytes, offset, offset + length), null);
+            return result;
+        }
+        finally {
+            reader.setTraceMode(mode);
+        }
+    }
+
+    // Clears the writer and encodes a message into it, traced if it is sampled.
+
+    public void encode(BinaryWriter writer, Encoder encoder) throws IOException {
+        boolean sampled = countdown();
+        if (!sampled && !m_onFailure) {
+            writer.clear();
+            encoder.encode(writer);
+            return;
+        }
+
+        TraceMode mode = writer.getTraceMode();
+        try {
+            if (sampled)
+                writer.setTraceMode(TraceMode.FULL);
+            writer.clear();
+
+            try {
+                encoder.encode(writer);
+            }
+            catch (IOException | RuntimeException | AssertionError e) {
+                if (m_onFailure) {
+                    if (!sampled) {
+                        writer.setTraceMode(TraceMode.FULL);
+                        writer.clear();
+                        retry(() -> encoder.encode(writer));
+                    }
+                    publish(Reason.FAILED, writer.getTrace(), writer.getBytes(), e);
+                }
+                throw e;
+            }
+
+            if (sampled)
+                publish(Reason.SAMPLED, writer.getTrace(), writer.getBytes(), null);
+        }
+        finally {
+            writer.setTraceMode(mode);
+        }
+    }
+
+    private boolean countdown() {
+        if (m_every == 0 || --m_countdown > 0)
+            return false;
+        m_countdown = m_every;
+        return true;
+    }
+
+    private interface Attempt {
+        void run() throws IOException;
+    }
+
+    // Runs a failed message again for its trace, it is expected to fail the same way.
+
+    private static void retry(Attempt attempt) {
+        try {
+            attempt.run();
+        }
+        catch (IOException | RuntimeException | AssertionError e) {
+            // the trace up to the failure is what is wanted
+        }
+    }
+
+    private void publish(Reason reason, Trace trace, byte[] bytes, Throwable error) {
+        m_sink.onTrace(new Sample(reason, trace, bytes, error));
+    }
+
+    /**
+     * A traced message. getBytes() is a copy of the message alone, whatever array it was decoded
+     * from, and trace positions are offsets in it.
+     */
+    public static final class Sample {
+        private final Reason m_reason;
+        private final Trace m_trace;
+        private final byte[] m_bytes;
+        private final Throwable m_error;
+
+        Sample(Reason reason, Trace trace, byte[] bytes, Throwable error) {
+            m_reason = reason;
+            m_trace = trace;
+            m_bytes = bytes;
+            m_error = error;
+        }
+
+        public Reason getReason() {
+            return m_reason;
+        }
+
+        public Trace getTrace() {
+            return m_trace;
+        }
+
+        public byte[] getBytes() {
+            return m_bytes;
+        }
+
+        public int getLength() {
+            return m_bytes.length;
+        }
+
+        // The exception of a FAILED sample, null otherwise.
+
+        public Throwable getError() {
+            return m_error;
+        }
+
+        public void dump(Appendable out) throws IOException {
+            out.append(m_reason.toString());
+            if (null != m_error)
+                out.append(' ').append(m_error.toString());
+            out.append('\n');
+            new HexDump(m_trace).dump(m_bytes, out);
+        }
+
+        public String toString() {
+            StringBuilder b = new StringBuilder();
+            try {
+                dump(b);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);  // StringBuilder does not throw
+            }
+            return b.toString();
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package org.bodhi.fbc;
+
+/**
+ * TraceSink receives the traces a TraceSampler takes, e.g. to log them or keep the last few for
+ * a support dump. It is called on the decoding thread; wrap it in an AsyncTraceSink to move
+ * slow work elsewhere.
+ */
+public interface TraceSink {
+    void onTrace(TraceSampler.Sample sample);
+}
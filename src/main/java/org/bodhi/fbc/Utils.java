@@ -1,6 +1,7 @@
 package org.bodhi.fbc;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 /**
  * Created by chris on 5/26/14.
@@ -15,64 +16,44 @@ public class Utils {
         return result;
     }
 
-    public static String toString(Trace trace, byte[] bytes) {
-        StringBuilder b = new StringBuilder();
-
-        for (int ii=0; ii<bytes.length; ii++) {
-            String field = trace.getField(ii, "");
-            String value = hex(bytes, ii);
-            String comment = trace.getComment(ii, "");
+    // Dumps go through HexDump, which renders the same text without a String.format per byte.
 
-            b.append(String.format("%4d 0x%04x %20s %s %s\n",
-                                   ii,
-                                   ii,
-                                   field,
-                                   value,
-                                   comment));
-        }
-        return b.toString();
+    public static String toString(Trace trace, byte[] bytes) {
+        return new HexDump(trace).toString(bytes);
     }
 
     public static String toString(Trace trace, byte[] left, byte[] right) {
-        StringBuilder b = new StringBuilder();
-
-        b.append(String.format("%9s %20s %s %s\n", "Off", "Field", "Actual", "Expected"));
+        StringBuilder b = new StringBuilder((Math.max(left.length, right.length) + 1) * 56);
 
-        int lastPosition = Math.max(left.length, right.length);
-
-        for (int ii=0; ii<lastPosition; ii++) {
-            String name = trace.getField(ii, ""); //m_tracex.containsKey(ii) ? m_tracex.get(ii) : "";
-            String leftByte = hex(left, ii);
-            String rightByte = hex(right, ii);
-            char mark = leftByte.equals(rightByte) ? ' ' : '*';
-            String comment = trace.getComment(ii, "");
-            b.append(String.format("%4d 0x%04x %20s %4s %4s %c %s\n",
-                                   ii,
-                                   ii,
-                                   name,
-                                   leftByte,
-                                   rightByte,
-                                   mark,
-                                   comment));
+        try {
+            new HexDump(trace).diff(left, right, b);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);  // StringBuilder does not throw
         }
-
         return b.toString();
     }
 
     public static String hex(byte[] bytes, int index) {
-        return (index < bytes.length) ? String.format("0x%02x", bytes[index]) : "----";
+        return (index < bytes.length) ? HexDump.hex(bytes[index]) : "----";
     }
 
     public static boolean isEqual(BinaryWriter bw, byte[] raw) {
         assert null != bw;
         assert null != raw;
-        return Arrays.equals(bw.getBytes(), raw);
+        return bw.mismatch(raw, 0) < 0;
     }
 
     public static String toString(Binary binary, byte[] raw) {
         return toString(binary.getTrace(), binary.getBytes(), raw);
     }
 
+    // Renders only the regions that differ, with context bytes around each, "" when none do.
+
+    public static String toString(Binary binary, byte[] raw, int context) {
+        return new BinaryDiff(context).toString(binary, raw);
+    }
+
     public static String toString(Binary b1, Binary b2) {
         return toString(b1.getTrace(), b1.getBytes(), b2.getBytes());
     }
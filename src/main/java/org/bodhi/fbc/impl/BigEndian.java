@@ -1,7 +1,13 @@
 package org.bodhi.fbc.impl;
 
+import java.nio.ByteOrder;
+
 public class BigEndian extends Endian {
 
+    ByteOrder getByteOrder() {
+        return ByteOrder.BIG_ENDIAN;
+    }
+
     // -- get/put char --
 
     char getUtfChar(byte[] bb, int offset) {
@@ -0,0 +1,130 @@
+package org.bodhi.fbc.impl;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/**
+ * BinaryBuffer is the byte storage plus cursor that BinaryReader and BinaryWriter work on.
+ * Buffer keeps the bytes in a heap array; NioBuffer works directly on a java.nio.ByteBuffer,
+ * including direct and read-only buffers, so frames from NIO or Netty need not be copied.
+ * Positions are always relative to the start of the message.
+ */
+public interface BinaryBuffer {
+
+    int getLimit();
+
+    int getPosition();
+
+    void setPosition(int n);
+
+    int skip(int n);
+
+    int available();
+
+    int getCapacity();
+
+    ByteOrder getByteOrder();
+
+    // Applies to every read and write from here on, so mixed-endian messages can switch.
+
+    void setByteOrder(ByteOrder order);
+
+    // Rewinds to the start for the next message and restores the original byte order.
+
+    void clear();
+
+    byte[] copyBytes();
+
+    int copyBytes(byte dst[], int offset);
+
+    // Returns the first offset from from on where the bytes up to the position differ from
+    // expected, or -1 when they match to the end of both. Nothing is copied. A length
+    // difference counts as a mismatch at the end of the shorter.
+
+    int mismatch(byte expected[], int from);
+
+    int getBytes(byte b[]) throws IOException;
+
+    int getBytes(byte b[], int off, int len);
+
+    char getUtfChar();
+
+    char getUtfChar(int offset);
+
+    int getInt1();
+
+    int getInt1(int offset);
+
+    int getUInt1();
+
+    int getUInt1(int offset);
+
+    int getInt2();
+
+    int getInt2(int offset);
+
+    int getUInt2();
+
+    int getUInt2(int offset);
+
+    int getInt4();
+
+    int getInt4(int offset);
+
+    long getInt8();
+
+    long getInt8(int offset);
+
+    // Absolute reads of a slice, these leave the position alone.
+
+    int getBytes(int offset, byte b[], int off, int len);
+
+    String getString(int offset, int length, Charset charset);
+
+    // Reads a fixed width text field, trimmed like String.trim.
+
+    String getString(int length, Charset charset);
+
+    // As above, but returns the cache's instance for bytes it has seen before.
+
+    String getString(int length, Charset charset, StringCache cache);
+
+    // Bulk reads and writes of arrays such as int32_t prices[64]. The whole array is bounds
+    // checked once and byte swapped in one pass, reads past the limit throw
+    // IndexOutOfBoundsException.
+
+    void getInt2s(short dst[], int off, int len);
+
+    void getInt4s(int dst[], int off, int len);
+
+    void getInt8s(long dst[], int off, int len);
+
+    void putInt2s(short src[], int off, int len);
+
+    void putInt4s(int src[], int off, int len);
+
+    void putInt8s(long src[], int off, int len);
+
+    void putBytes(byte[] bytes);
+
+    void putBytes(byte[] bytes, int offset, int length);
+
+    void putUtfChar(char c);
+
+    // Writes s into exactly length bytes, truncated or padded with fill (' ' or 0 for C).
+
+    void putString(CharSequence s, int length, Charset charset, byte fill);
+
+    void putInt1(int n);
+
+    void putInt2(int n);
+
+    void putInt4(int n);
+
+    void putInt4(int offset, int n);
+
+    void putInt8(long n);
+
+    String hex(int index);
+}
@@ -3,59 +3,133 @@ package org.bodhi.fbc.impl;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
 import java.util.Arrays;
+import java.util.Objects;
 
 // Buffer is in charge of byte buffer and tracking position, limit, etcf
 
-public class Buffer {
-    private static final Endian BIG = new BigEndian();
-    private static final Endian LITTLE = new LittleEndian();
+public class Buffer implements BinaryBuffer {
+    private static final Endian BIG = Endian.BIG;
+
+    // Largest array most VMs will allocate.
+    public static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
 
     private byte buf[];
-    private int pos;
+    private int m_start;    // where the message starts in buf, positions are relative to it
+    private int pos;        // pos and limit are indexes in buf
     private int limit;
-    private final Endian m_endian;
-    private final int m_growthFactor;
+    private Endian m_endian;
+    private final Endian m_initialEndian; // restored by clear and reset
+    private final int m_maxCapacity; // of the message, 0 when the buffer never grows
 
     public Buffer(int size) {
-        m_growthFactor = Math.max(size, 16);
-        this.buf = new byte[m_growthFactor];
-        this.pos = 0;
-        m_endian = BIG;
-        this.limit = m_growthFactor;
+        this(size, MAX_CAPACITY);
+    }
+
+    // A growable buffer. It doubles its capacity when full, but never past maxCapacity.
+
+    public Buffer(int size, int maxCapacity) {
+        this(size, maxCapacity, ByteOrder.BIG_ENDIAN);
+    }
+
+    public Buffer(int size, int maxCapacity, ByteOrder order) {
+        this(new byte[Math.min(Math.max(size, 16), maxCapacity)], 0, 0, Endian.of(order), maxCapacity);
+        this.limit = buf.length;
     }
 
     public Buffer(byte buf[]) {
         this(buf, 0, buf.length, BIG, 0);
     }
 
+    public Buffer(byte buf[], ByteOrder order) {
+        this(buf, 0, buf.length, Endian.of(order), 0);
+    }
+
     public Buffer(byte buf[], int offset, int length) {
-        this(buf, offset, Math.min(offset + length, buf.length), BIG, 0);
+        this(buf, offset, length, ByteOrder.BIG_ENDIAN);
+    }
+
+    public Buffer(byte buf[], int offset, int length, ByteOrder order) {
+        this(buf, offset, Math.min(offset + length, buf.length), Endian.of(order), 0);
     }
 
-    private Buffer(byte buf[],
-                   int pos,
-                   int limit,
-                   Endian endian,
-                   int growthFactor)
+    Buffer(byte buf[],
+           int pos,
+           int limit,
+           Endian endian,
+           int maxCapacity)
     {
         this.buf = buf;
+        m_start = pos;
         this.pos = pos;
         this.limit = limit;
         m_endian = endian;
-        m_growthFactor = growthFactor;
+        m_initialEndian = endian;
+        m_maxCapacity = maxCapacity;
+    }
+
+    // A buffer that writes into a caller supplied array, so encoding can reuse one array.
+    // If a message does not fit, the buffer moves to a larger copy of the array.
+
+    public static Buffer forWriting(byte buf[], int maxCapacity) {
+        return new Buffer(buf, 0, buf.length, BIG, Math.max(maxCapacity, buf.length));
+    }
+
+    // Writes from offset on, up to length bytes before moving to a larger copy.
+
+    public static Buffer forWriting(byte buf[], int offset, int length, ByteOrder order, int maxCapacity) {
+        return new Buffer(buf, offset, Math.min(offset + length, buf.length), Endian.of(order),
+                          Math.max(maxCapacity, buf.length - offset));
+    }
+
+    // Moves the buffer onto another array, so one instance can decode message after message.
+    // The message starts at offset, which becomes position 0. The byte order goes back to the
+    // one the buffer was made with.
+
+    public void reset(byte buf[]) {
+        reset(buf, 0, buf.length);
+    }
+
+    public void reset(byte buf[], int offset, int length) {
+        this.buf = buf;
+        m_start = offset;
+        this.pos = offset;
+        this.limit = Math.min(offset + length, buf.length);
+        m_endian = m_initialEndian;
+    }
+
+    public void clear() {
+        pos = m_start;
+        m_endian = m_initialEndian;
+    }
+
+    public int getCapacity() {
+        return buf.length - m_start;
+    }
+
+    public ByteOrder getByteOrder() {
+        return m_endian.getByteOrder();
+    }
+
+    // The order can change mid-message, e.g. for a big endian header on a little endian body.
+
+    public void setByteOrder(ByteOrder order) {
+        m_endian = Endian.of(order);
     }
 
     public int getLimit() {
-        return limit;
+        return limit - m_start;
     }
     
     public int getPosition() {
-        return pos;
+        return pos - m_start;
     }
 
     public void setPosition(int n) {
-        pos = n;
+        pos = m_start + n;
     }
 
     public int skip(int n) {
@@ -69,7 +143,24 @@ public class Buffer {
     }
 
     public byte[] copyBytes() {
-        return Arrays.copyOf(buf, pos);
+        return Arrays.copyOfRange(buf, m_start, pos);
+    }
+
+    // Copies the bytes up to the position into dst without allocating, returns the count.
+
+    public int copyBytes(byte dst[], int offset) {
+        System.arraycopy(buf, m_start, dst, offset, pos - m_start);
+        return pos - m_start;
+    }
+
+    public int mismatch(byte expected[], int from) {
+        int length = pos - m_start;
+        int end = Math.min(length, expected.length);
+        if (from >= end)
+            return (from < Math.max(length, expected.length)) ? from : -1;
+
+        int n = Arrays.mismatch(buf, m_start + from, pos, expected, from, expected.length);
+        return (n < 0) ? -1 : from + n;
     }
 
 
@@ -97,13 +188,17 @@ public class Buffer {
         return result;
     }
 
+    public char getUtfChar(int offset) {
+        return m_endian.getUtfChar(buf, at(offset, 2));
+    }
+
 
     public int getInt1() {
         return buf[alloc(1)];
     }
 
     public int getInt1(int offset) {
-        return buf[offset];
+        return buf[at(offset, 1)];
     }
 
     public int getUInt1() {
@@ -111,7 +206,7 @@ public class Buffer {
     }
 
     public int getUInt1(int offset) {
-        return buf[offset] & 0xff;
+        return buf[at(offset, 1)] & 0xff;
     }
 
      public int getInt2()  {
@@ -119,7 +214,7 @@ public class Buffer {
     }
 
     public int getInt2(int offset)  {
-        return m_endian.getInt2(buf, offset);
+        return m_endian.getInt2(buf, at(offset, 2));
     }
 
     public int getUInt2()  {
@@ -137,12 +232,124 @@ public class Buffer {
         return m_endian.getInt4(buf, alloc(4));
     }
 
+    public int getInt4(int offset) {
+        return m_endian.getInt4(buf, at(offset, 4));
+    }
+
     public long getInt8() {
         return m_endian.getInt8(buf, alloc(8));
     }
 
+    public long getInt8(int offset) {
+        return m_endian.getInt8(buf, at(offset, 8));
+    }
+
+    public int getBytes(int offset, byte b[], int off, int len) {
+        System.arraycopy(buf, at(offset, len), b, off, len);
+        return len;
+    }
+
+    // Decodes straight from the backing array, trimmed like BinaryReader.getString.
+
+    public String getString(int offset, int length, Charset charset) {
+        return Bytes.decode(buf, at(offset, length), length, charset);
+    }
+
+    public String getString(int length, Charset charset) {
+        return Bytes.decode(buf, alloc(length), length, charset);
+    }
+
+    public String getString(int length, Charset charset, StringCache cache) {
+        return cache.get(buf, alloc(length), length, charset);
+    }
+
+
+
+
+    // Bulk arrays in the platform's order are one ByteBuffer view copy, which the JIT turns
+    // into a memory copy. Other orders are a plain Endian loop, since the swapping views are
+    // no faster than that. Either way the array is bounds checked once.
+
+    public void getInt2s(short dst[], int off, int len) {
+        Objects.checkFromIndexSize(off, len, dst.length);
+        int start = bulk(len, 2);
+        if (isNative()) {
+            view(start, len * 2).asShortBuffer().get(dst, off, len);
+        }
+        else {
+            for (int ii=0; ii<len; ii++) {
+                dst[off + ii] = (short) m_endian.getInt2(buf, start + 2 * ii);
+            }
+        }
+    }
+
+    public void getInt4s(int dst[], int off, int len) {
+        Objects.checkFromIndexSize(off, len, dst.length);
+        int start = bulk(len, 4);
+        if (isNative()) {
+            view(start, len * 4).asIntBuffer().get(dst, off, len);
+        }
+        else {
+            for (int ii=0; ii<len; ii++) {
+                dst[off + ii] = m_endian.getInt4(buf, start + 4 * ii);
+            }
+        }
+    }
+
+    public void getInt8s(long dst[], int off, int len) {
+        Objects.checkFromIndexSize(off, len, dst.length);
+        int start = bulk(len, 8);
+        if (isNative()) {
+            view(start, len * 8).asLongBuffer().get(dst, off, len);
+        }
+        else {
+            for (int ii=0; ii<len; ii++) {
+                dst[off + ii] = m_endian.getInt8(buf, start + 8 * ii);
+            }
+        }
+    }
+
+    public void putInt2s(short src[], int off, int len) {
+        Objects.checkFromIndexSize(off, len, src.length);
+        grow(len * 2);
+        int start = bulk(len, 2);
+        if (isNative()) {
+            view(start, len * 2).asShortBuffer().put(src, off, len);
+        }
+        else {
+            for (int ii=0; ii<len; ii++) {
+                m_endian.putInt2(buf, start + 2 * ii, src[off + ii]);
+            }
+        }
+    }
 
+    public void putInt4s(int src[], int off, int len) {
+        Objects.checkFromIndexSize(off, len, src.length);
+        grow(len * 4);
+        int start = bulk(len, 4);
+        if (isNative()) {
+            view(start, len * 4).asIntBuffer().put(src, off, len);
+        }
+        else {
+            for (int ii=0; ii<len; ii++) {
+                m_endian.putInt4(buf, start + 4 * ii, src[off + ii]);
+            }
+        }
+    }
 
+    public void putInt8s(long src[], int off, int len) {
+        Objects.checkFromIndexSize(off, len, src.length);
+        grow(len * 8);
+        int start = bulk(len, 8);
+        if (isNative()) {
+            view(start, len * 8).asLongBuffer().put(src, off, len);
+        }
+        else {
+            for (int ii=0; ii<len; ii++) {
+                m_endian.putInt8(buf, start + 8 * ii, src[off + ii]);
+            }
+        }
+    }
 
     public void putBytes(byte[] bytes) {
         putBytes(bytes, 0, bytes.length);
@@ -159,6 +366,13 @@ public class Buffer {
         m_endian.putUtfChar(buf, alloc(2), c);
     }
 
+    public void putString(CharSequence s, int length, Charset charset, byte fill) {
+        grow(length);
+        int start = alloc(length);
+        int n = Bytes.encode(s, charset, buf, start, length);
+        Arrays.fill(buf, start + n, start + length, fill);
+    }
+
 
     public void putInt1(int n) {
         grow(1);
@@ -177,7 +391,7 @@ public class Buffer {
 
     public void putInt4(int offset, int n) {
         grow(4);
-        m_endian.putInt4(buf, offset, n);
+        m_endian.putInt4(buf, at(offset, 4), n);
     }
 
     public void putInt8(long n) {
@@ -186,7 +400,7 @@ public class Buffer {
     }
 
     public int hashCode() {
-        return buf.hashCode() + pos + limit;
+        return buf.hashCode() + m_start + pos + limit;
     }
 
     @Override
@@ -196,20 +410,23 @@ public class Buffer {
 
         Buffer that = (Buffer) o;
 
-        if (limit != that.limit) return false;
-        if (pos != that.pos) return false;
-
-        byte[] thisCopy = Arrays.copyOf(buf, pos);
-        byte[] thatCopy = Arrays.copyOf(that.buf, pos);
-
-
-        if (!Arrays.equals(thisCopy, thatCopy)) return false;
+        if (getLimit() != that.getLimit()) return false;
+        if (getPosition() != that.getPosition()) return false;
 
-        return true;
+        return Arrays.equals(buf, m_start, pos, that.buf, that.m_start, that.pos);
     }
 
     public String hex(int index) {
-        return (index < pos) ? String.format("0x%02x", getUInt1(index)) : "----";
+        return (index < getPosition()) ? String.format("0x%02x", getUInt1(index)) : "----";
+    }
+
+    // Returns the index in buf of n bytes at offset, which must lie within the message. Unlike
+    // alloc this is checked always, since views such as Flyweight compute their offsets.
+
+    private int at(int offset, int n) {
+        if (offset < 0 || n < 0 || offset > limit - m_start - n)
+            throw new IndexOutOfBoundsException(n + " bytes at " + offset + ", limit is " + (limit - m_start));
+        return m_start + offset;
     }
 
     private int alloc(int n) {
@@ -222,15 +439,34 @@ public class Buffer {
         return result;
     }
 
+    private int bulk(int count, int size) {
+        if (count < 0 || (long) count * size > limit - pos)
+            throw new IndexOutOfBoundsException(count + " values of " + size + " bytes at " + pos + ", limit is " + limit);
+        return alloc(count * size);
+    }
+
+    private boolean isNative() {
+        return m_endian.getByteOrder() == ByteOrder.nativeOrder();
+    }
+
+    private ByteBuffer view(int start, int length) {
+        return ByteBuffer.wrap(buf, start, length).order(getByteOrder());
+    }
+
+    // Geometric growth keeps the number of copies logarithmic in the message size. The
+    // maximum is for the message, so the array may reach m_start + m_maxCapacity.
+
     private void grow(int n) {
-        int overflow = pos + n - limit;
+        long required = (long) pos + n;
+
+        if (required > limit && m_maxCapacity > 0) {
+            long max = Math.min((long) m_start + m_maxCapacity, MAX_CAPACITY);
+            if (required > max)
+                throw new IndexOutOfBoundsException("Buffer can not grow past " + m_maxCapacity + " bytes");
 
-        if (overflow > 0 && m_growthFactor > 0) {
-            int newLimit = limit + overflow + m_growthFactor;
-            byte[] newBuf = new byte[newLimit];
-            System.arraycopy(buf, 0, newBuf, 0, limit);
-            buf = newBuf;
-            limit += newLimit;
+            long doubled = Math.min(2L * buf.length, max);
+            buf = Arrays.copyOf(buf, (int) Math.max(required, doubled));
+            limit = buf.length;
         }
     }
 
@@ -1,7 +1,138 @@
 package org.bodhi.fbc.impl;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+// Text helpers shared by the buffers. Fixed width fields are encoded straight into the
+// destination and decoded straight from the source, with no intermediate arrays or strings.
+
 public class Bytes {
+    private static final ThreadLocal<CharsetEncoder> ENCODER = new ThreadLocal<CharsetEncoder>();
 
     private Bytes() { }
 
+    // Encodes as much of s as fits in len bytes at dst[off], returns the bytes written.
+    // A character that would not fit whole is left out. Unmappable characters become '?'.
+
+    static int encode(CharSequence s, Charset charset, byte[] dst, int off, int len) {
+        int max = maxChar(charset);
+
+        if (max > 0) {
+            int n = Math.min(s.length(), len);
+            for (int ii=0; ii<n; ii++) {
+                char c = s.charAt(ii);
+                dst[off + ii] = (c <= max) ? (byte) c : (byte) '?';
+            }
+            return n;
+        }
+
+        return encode(s, charset, ByteBuffer.wrap(dst, off, len)) - off;
+    }
+
+    static int encode(CharSequence s, Charset charset, ByteBuffer dst, int off, int len) {
+        if (dst.hasArray())
+            return encode(s, charset, dst.array(), dst.arrayOffset() + off, len);
+
+        int max = maxChar(charset);
+
+        if (max > 0) {
+            int n = Math.min(s.length(), len);
+            for (int ii=0; ii<n; ii++) {
+                char c = s.charAt(ii);
+                dst.put(off + ii, (c <= max) ? (byte) c : (byte) '?');
+            }
+            return n;
+        }
+
+        ByteBuffer out = dst.duplicate();
+        out.limit(off + len).position(off);
+        return encode(s, charset, out) - off;
+    }
+
+    // Decodes len bytes at src[off], dropping leading and trailing spaces, control characters
+    // and NULs as String.trim would. For ASCII compatible charsets those are single bytes, so
+    // they are skipped before decoding and the only allocation is the result.
+
+    static String decode(byte[] src, int off, int len, Charset charset) {
+        if (!isAsciiCompatible(charset))
+            return new String(src, off, len, charset).trim();
+
+        int start = off;
+        int end = off + len;
+
+        while (start < end && (src[start] & 0xff) <= ' ') {
+            start++;
+        }
+        while (end > start && (src[end - 1] & 0xff) <= ' ') {
+            end--;
+        }
+        return new String(src, start, end - start, charset);
+    }
+
+    // The same for len bytes at src's absolute index off. Heap buffers decode straight from
+    // their array, others copy only the trimmed bytes. Public for readers outside impl that
+    // hold a ByteBuffer, such as MappedFileReader.
+
+    public static String decode(ByteBuffer src, int off, int len, Charset charset) {
+        if (src.hasArray())
+            return decode(src.array(), src.arrayOffset() + off, len, charset);
+
+        int start = off;
+        int end = off + len;
+
+        if (isAsciiCompatible(charset)) {
+            while (start < end && (src.get(start) & 0xff) <= ' ') {
+                start++;
+            }
+            while (end > start && (src.get(end - 1) & 0xff) <= ' ') {
+                end--;
+            }
+        }
+
+        byte[] dst = new byte[end - start];
+        src.get(start, dst, 0, dst.length);
+        return decode(dst, 0, dst.length, charset);
+    }
+
+    static void fill(ByteBuffer dst, int from, int to, byte fill) {
+        for (int ii=from; ii<to; ii++) {
+            dst.put(ii, fill);
+        }
+    }
+
+    private static int encode(CharSequence s, Charset charset, ByteBuffer out) {
+        CharsetEncoder encoder = ENCODER.get();
+
+        if (null == encoder || !encoder.charset().equals(charset)) {
+            encoder = charset.newEncoder()
+                             .onMalformedInput(CodingErrorAction.REPLACE)
+                             .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            ENCODER.set(encoder);
+        }
+
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(s), out, true);
+        encoder.flush(out);
+        return out.position();
+    }
+
+    // Returns the highest char that maps to the same byte value, 0 when that is not the case.
+
+    private static int maxChar(Charset charset) {
+        if (StandardCharsets.ISO_8859_1.equals(charset))
+            return 0xff;
+        if (StandardCharsets.US_ASCII.equals(charset))
+            return 0x7f;
+        return 0;
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        return StandardCharsets.ISO_8859_1.equals(charset)
+            || StandardCharsets.US_ASCII.equals(charset)
+            || StandardCharsets.UTF_8.equals(charset);
+    }
 }
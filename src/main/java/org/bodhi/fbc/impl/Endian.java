@@ -1,7 +1,32 @@
 package org.bodhi.fbc.impl;
 
+import java.nio.ByteOrder;
+
 public abstract class Endian {
 
+    // VarHandle based primitives are used unless -Dorg.bodhi.fbc.endian=bytes asks for the
+    // original byte by byte implementations. Only one family is loaded, so calls through
+    // Endian see at most two receiver types and stay inlined.
+
+    static final boolean VAR_HANDLES = !"bytes".equals(System.getProperty("org.bodhi.fbc.endian"));
+
+    static Endian big() {
+        return VAR_HANDLES ? new VarHandleBigEndian() : new BigEndian();
+    }
+
+    static Endian little() {
+        return VAR_HANDLES ? new VarHandleLittleEndian() : new LittleEndian();
+    }
+
+    static final Endian BIG = big();
+    static final Endian LITTLE = little();
+
+    static Endian of(ByteOrder order) {
+        return (ByteOrder.LITTLE_ENDIAN == order) ? LITTLE : BIG;
+    }
+
+    abstract ByteOrder getByteOrder();
+
     // -- get/put char --
 
     abstract char getUtfChar(byte[] bb, int offset);
@@ -0,0 +1,315 @@
+package org.bodhi.fbc.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Objects;
+
+// NioBuffer reads and writes a ByteBuffer in place, heap, direct or read-only. It covers the
+// bytes between the ByteBuffer's position and limit when it was wrapped, using the
+// ByteBuffer's byte order, and never grows. Multi byte values use the ByteBuffer's own
+// absolute getInt/getLong, which the JIT turns into single loads. reset(offset, length) moves
+// onto another message within the same bytes, without allocating.
+
+public class NioBuffer implements BinaryBuffer {
+    private final ByteBuffer m_bytes;
+    private int m_start;    // where the message starts in m_bytes, positions are relative to it
+    private int pos;
+    private int limit;
+    private final ByteOrder m_initialOrder;
+
+    public NioBuffer(ByteBuffer bytes) {
+        this(bytes, bytes.order());
+    }
+
+    public NioBuffer(ByteBuffer bytes, ByteOrder order) {
+        m_bytes = bytes.slice().order(order);
+        this.pos = 0;
+        this.limit = m_bytes.remaining();
+        m_initialOrder = order;
+    }
+
+    // The message starts at offset in the bytes that were wrapped, which becomes position 0.
+    // The byte order goes back to the one the buffer was made with.
+
+    public void reset(int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, m_bytes.remaining());
+        m_start = offset;
+        pos = offset;
+        limit = offset + length;
+        m_bytes.order(m_initialOrder);
+    }
+
+    public ByteOrder getByteOrder() {
+        return m_bytes.order();
+    }
+
+    public void setByteOrder(ByteOrder order) {
+        m_bytes.order(order);
+    }
+
+    public void clear() {
+        pos = m_start;
+        m_bytes.order(m_initialOrder);
+    }
+
+    public boolean isReadOnly() {
+        return m_bytes.isReadOnly();
+    }
+
+    public int getLimit() {
+        return limit - m_start;
+    }
+
+    public int getPosition() {
+        return pos - m_start;
+    }
+
+    public void setPosition(int n) {
+        pos = m_start + n;
+    }
+
+    public int skip(int n) {
+        alloc(n);
+        return n;
+    }
+
+    public int available() {
+        return limit - pos;
+    }
+
+    public int getCapacity() {
+        return limit - m_start;
+    }
+
+    public byte[] copyBytes() {
+        byte[] result = new byte[pos - m_start];
+        m_bytes.get(m_start, result, 0, result.length);
+        return result;
+    }
+
+    public int copyBytes(byte dst[], int offset) {
+        m_bytes.get(m_start, dst, offset, pos - m_start);
+        return pos - m_start;
+    }
+
+    // ByteBuffer.mismatch compares in place, heap or direct.
+
+    public int mismatch(byte expected[], int from) {
+        int length = pos - m_start;
+        int end = Math.min(length, expected.length);
+        if (from >= end)
+            return (from < Math.max(length, expected.length)) ? from : -1;
+
+        int n = m_bytes.slice(m_start + from, length - from).mismatch(ByteBuffer.wrap(expected, from, expected.length - from));
+        return (n < 0) ? -1 : from + n;
+    }
+
+
+
+    public int getBytes(byte b[]) throws IOException {
+        return getBytes(b, 0, b.length);
+    }
+
+    public int getBytes(byte b[], int off, int len) {
+        assert null != b;
+
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        m_bytes.get(alloc(len), b, off, len);
+        return len;
+    }
+
+
+    public char getUtfChar() {
+        return m_bytes.getChar(alloc(2));
+    }
+
+    public char getUtfChar(int offset) {
+        return m_bytes.getChar(at(offset, 2));
+    }
+
+
+    public int getInt1() {
+        return m_bytes.get(alloc(1));
+    }
+
+    public int getInt1(int offset) {
+        return m_bytes.get(at(offset, 1));
+    }
+
+    public int getUInt1() {
+        return m_bytes.get(alloc(1)) & 0xff;
+    }
+
+    public int getUInt1(int offset) {
+        return m_bytes.get(at(offset, 1)) & 0xff;
+    }
+
+    public int getInt2() {
+        return m_bytes.getShort(alloc(2));
+    }
+
+    public int getInt2(int offset) {
+        return m_bytes.getShort(at(offset, 2));
+    }
+
+    public int getUInt2() {
+        return getInt2() & 0xffff;
+    }
+
+    public int getUInt2(int offset) {
+        return getInt2(offset) & 0xffff;
+    }
+
+
+    public int getInt4() {
+        return m_bytes.getInt(alloc(4));
+    }
+
+    public int getInt4(int offset) {
+        return m_bytes.getInt(at(offset, 4));
+    }
+
+    public long getInt8() {
+        return m_bytes.getLong(alloc(8));
+    }
+
+    public long getInt8(int offset) {
+        return m_bytes.getLong(at(offset, 8));
+    }
+
+    public int getBytes(int offset, byte b[], int off, int len) {
+        m_bytes.get(at(offset, len), b, off, len);
+        return len;
+    }
+
+    // Heap buffers decode straight from their array, others go through one copy.
+
+    public String getString(int offset, int length, Charset charset) {
+        return Bytes.decode(m_bytes, at(offset, length), length, charset);
+    }
+
+    public String getString(int length, Charset charset) {
+        return Bytes.decode(m_bytes, alloc(length), length, charset);
+    }
+
+    public String getString(int length, Charset charset, StringCache cache) {
+        return cache.get(m_bytes, alloc(length), length, charset);
+    }
+
+
+
+    public void getInt2s(short dst[], int off, int len) {
+        Objects.checkFromIndexSize(off, len, dst.length);
+        int start = bulk(len, 2);
+        view(start, len * 2).asShortBuffer().get(dst, off, len);
+    }
+
+    public void getInt4s(int dst[], int off, int len) {
+        Objects.checkFromIndexSize(off, len, dst.length);
+        int start = bulk(len, 4);
+        view(start, len * 4).asIntBuffer().get(dst, off, len);
+    }
+
+    public void getInt8s(long dst[], int off, int len) {
+        Objects.checkFromIndexSize(off, len, dst.length);
+        int start = bulk(len, 8);
+        view(start, len * 8).asLongBuffer().get(dst, off, len);
+    }
+
+    public void putInt2s(short src[], int off, int len) {
+        Objects.checkFromIndexSize(off, len, src.length);
+        int start = bulk(len, 2);
+        view(start, len * 2).asShortBuffer().put(src, off, len);
+    }
+
+    public void putInt4s(int src[], int off, int len) {
+        Objects.checkFromIndexSize(off, len, src.length);
+        int start = bulk(len, 4);
+        view(start, len * 4).asIntBuffer().put(src, off, len);
+    }
+
+    public void putInt8s(long src[], int off, int len) {
+        Objects.checkFromIndexSize(off, len, src.length);
+        int start = bulk(len, 8);
+        view(start, len * 8).asLongBuffer().put(src, off, len);
+    }
+
+    public void putBytes(byte[] bytes) {
+        putBytes(bytes, 0, bytes.length);
+    }
+
+    public void putBytes(byte[] bytes, int offset, int length) {
+        m_bytes.put(alloc(length), bytes, offset, length);
+    }
+
+    public void putUtfChar(char c) {
+        m_bytes.putChar(alloc(2), c);
+    }
+
+    public void putString(CharSequence s, int length, Charset charset, byte fill) {
+        int start = alloc(length);
+        int n = Bytes.encode(s, charset, m_bytes, start, length);
+        Bytes.fill(m_bytes, start + n, start + length, fill);
+    }
+
+
+    public void putInt1(int n) {
+        m_bytes.put(alloc(1), (byte) n);
+    }
+
+    public void putInt2(int n) {
+        m_bytes.putShort(alloc(2), (short) n);
+    }
+
+    public void putInt4(int n) {
+        m_bytes.putInt(alloc(4), n);
+    }
+
+    public void putInt4(int offset, int n) {
+        m_bytes.putInt(at(offset, 4), n);
+    }
+
+    public void putInt8(long n) {
+        m_bytes.putLong(alloc(8), n);
+    }
+
+    public String hex(int index) {
+        return (index < getPosition()) ? String.format("0x%02x", getUInt1(index)) : "----";
+    }
+
+    // Unlike Buffer there is no growth, so running off the end is always an error.
+
+    private int bulk(int count, int size) {
+        if (count < 0 || (long) count * size > limit - pos)
+            throw new IndexOutOfBoundsException(count + " values of " + size + " bytes at " + getPosition() + ", limit is " + getLimit());
+        return alloc(count * size);
+    }
+
+    // An absolute slice, so the ByteBuffer's own position is never touched.
+
+    private ByteBuffer view(int start, int length) {
+        return m_bytes.slice(start, length).order(m_bytes.order());
+    }
+
+    // Returns the index in m_bytes of n bytes at offset, which must lie within the message.
+
+    private int at(int offset, int n) {
+        if (offset < 0 || n < 0 || offset > limit - m_start - n)
+            throw new IndexOutOfBoundsException(n + " bytes at " + offset + ", limit is " + getLimit());
+        return m_start + offset;
+    }
+
+    private int alloc(int n) {
+        if (pos + n > limit)
+            throw new IndexOutOfBoundsException("Need " + n + " bytes at " + getPosition() + ", limit is " + getLimit());
+
+        int result = pos;
+        pos += n;
+        return result;
+    }
+}
@@ -0,0 +1,183 @@
+package org.bodhi.fbc.impl;
+
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.Charset;
+
+/**
+ * SharedBytes is an immutable run of bytes, such as one decoded frame, that any number of
+ * threads can read at once without copying or locking. The bytes are the shared part; each
+ * thread asks for its own cursor(), a BinaryBuffer holding nothing but a position and byte
+ * order, so threads never see each other's reads. Cursors refuse every write with a
+ * ReadOnlyBufferException.
+ *
+ * Publication: every field is final, so once the constructor returns, the array and the bytes
+ * it held at that point are visible to any thread that gets the SharedBytes, even through a
+ * data race (JLS 17.5). copyOf makes its copy inside the constructor and is always safe. wrap
+ * takes the caller's array as it is, so the caller must finish writing it before wrapping and
+ * never write it again. A cursor itself is not thread safe and must stay on one thread.
+ *
+ *   SharedBytes frame = SharedBytes.copyOf(bytes);
+ *   // on any thread
+ *   BinaryReader reader = new BinaryReader(frame.cursor(), charset, TraceMode.OFF);
+ */
+public final class SharedBytes {
+    private final byte[] m_bytes;
+    private final int m_offset;
+    private final int m_length;
+    private final ByteOrder m_order;
+
+    private SharedBytes(byte[] bytes, int offset, int length, ByteOrder order) {
+        if (offset < 0 || length < 0 || length > bytes.length - offset)
+            throw new IndexOutOfBoundsException("Range " + offset + "+" + length + " of " + bytes.length + " bytes");
+
+        m_bytes = bytes;
+        m_offset = offset;
+        m_length = length;
+        m_order = order;
+    }
+
+    public static SharedBytes copyOf(byte[] bytes) {
+        return new SharedBytes(bytes.clone(), 0, bytes.length, ByteOrder.BIG_ENDIAN);
+    }
+
+    // Shares the caller's array without copying, it must not change from here on.
+
+    public static SharedBytes wrap(byte[] bytes, int offset, int length, ByteOrder order) {
+        return new SharedBytes(bytes, offset, length, order);
+    }
+
+    public int getOffset() {
+        return m_offset;
+    }
+
+    public int getLength() {
+        return m_length;
+    }
+
+    public ByteOrder getByteOrder() {
+        return m_order;
+    }
+
+    // Returns a new cursor over the bytes, positioned at the offset. Positions are relative to
+    // the offset, as for Buffer(byte[], offset, length).
+
+    public BinaryBuffer cursor() {
+        return new Cursor(m_bytes, m_offset, m_offset + m_length, Endian.of(m_order));
+    }
+
+    // A Buffer whose writes all throw. Relative reads and skips are checked against the limit,
+    // where Buffer only asserts, as the bytes past it belong to whoever shares the rest of the
+    // array; Buffer checks absolute reads itself. clear() is Buffer's own and rewinds to the
+    // offset, position 0.
+
+    private static final class Cursor extends Buffer {
+
+        Cursor(byte[] bytes, int pos, int limit, Endian endian) {
+            super(bytes, pos, limit, endian, 0);
+        }
+
+        private void check(int offset, int n) {
+            if (offset < 0 || n < 0 || offset > getLimit() - n)
+                throw new IndexOutOfBoundsException(n + " bytes at " + offset + ", limit is " + getLimit());
+        }
+
+        public int skip(int n) {
+            check(getPosition(), n);
+            return super.skip(n);
+        }
+
+        public int getBytes(byte b[], int off, int len) {
+            check(getPosition(), len);
+            return super.getBytes(b, off, len);
+        }
+
+        public char getUtfChar() {
+            check(getPosition(), 2);
+            return super.getUtfChar();
+        }
+
+        public int getInt1() {
+            check(getPosition(), 1);
+            return super.getInt1();
+        }
+
+        public int getUInt1() {
+            check(getPosition(), 1);
+            return super.getUInt1();
+        }
+
+        public int getInt2() {
+            check(getPosition(), 2);
+            return super.getInt2();
+        }
+
+        public int getInt4() {
+            check(getPosition(), 4);
+            return super.getInt4();
+        }
+
+        public long getInt8() {
+            check(getPosition(), 8);
+            return super.getInt8();
+        }
+
+        public String getString(int length, Charset charset) {
+            check(getPosition(), length);
+            return super.getString(length, charset);
+        }
+
+        public String getString(int length, Charset charset, StringCache cache) {
+            check(getPosition(), length);
+            return super.getString(length, charset, cache);
+        }
+
+        public void reset(byte buf[], int offset, int length) {
+            throw new ReadOnlyBufferException();
+        }
+
+        public void putBytes(byte[] bytes, int offset, int length) {
+            throw new ReadOnlyBufferException();
+        }
+
+        public void putUtfChar(char c) {
+            throw new ReadOnlyBufferException();
+        }
+
+        public void putString(CharSequence s, int length, Charset charset, byte fill) {
+            throw new ReadOnlyBufferException();
+        }
+
+        public void putInt1(int n) {
+            throw new ReadOnlyBufferException();
+        }
+
+        public void putInt2(int n) {
+            throw new ReadOnlyBufferException();
+        }
+
+        public void putInt4(int n) {
+            throw new ReadOnlyBufferException();
+        }
+
+        public void putInt4(int offset, int n) {
+            throw new ReadOnlyBufferException();
+        }
+
+        public void putInt8(long n) {
+            throw new ReadOnlyBufferException();
+        }
+
+        public void putInt2s(short src[], int off, int len) {
+            throw new ReadOnlyBufferException();
+        }
+
+        public void putInt4s(int src[], int off, int len) {
+            throw new ReadOnlyBufferException();
+        }
+
+        public void putInt8s(long src[], int off, int len) {
+            throw new ReadOnlyBufferException();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package org.bodhi.fbc.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+// StringCache hands out one String instance per distinct fixed width field, so codes that
+// repeat millions of times are decoded once. Lookups hash and compare the raw bytes where they
+// lie in the buffer, a hit allocates nothing. Strings are trimmed as by Bytes.decode.
+//
+// A cache is not thread safe, give each reader its own or share one per thread.
+
+public class StringCache {
+
+    public enum Eviction {
+        LRU,    // drops the least recently used entry when full
+        BOUNDED // keeps the first entries it sees, later strings are decoded but not cached
+    }
+
+    private final int m_capacity;
+    private final Eviction m_eviction;
+    private final Entry[] m_table;
+    private final Entry m_head = new Entry(); // sentinel of the recency list, newest first
+    private int m_size;
+
+    private long m_hits;
+    private long m_misses;
+    private long m_evictions;
+
+    public StringCache(int capacity) {
+        this(capacity, Eviction.LRU);
+    }
+
+    public StringCache(int capacity, Eviction eviction) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+
+        m_capacity = capacity;
+        m_eviction = eviction;
+        m_table = new Entry[Integer.highestOneBit(Math.max(capacity * 2 - 1, 1)) << 1];
+        m_head.before = m_head;
+        m_head.after = m_head;
+    }
+
+    public int getCapacity() {
+        return m_capacity;
+    }
+
+    public Eviction getEviction() {
+        return m_eviction;
+    }
+
+    public int size() {
+        return m_size;
+    }
+
+    public long getHits() {
+        return m_hits;
+    }
+
+    public long getMisses() {
+        return m_misses;
+    }
+
+    public long getEvictions() {
+        return m_evictions;
+    }
+
+    public double getHitRate() {
+        long lookups = m_hits + m_misses;
+        return lookups == 0 ? 0.0 : (double) m_hits / lookups;
+    }
+
+    public void clear() {
+        Arrays.fill(m_table, null);
+        m_head.before = m_head;
+        m_head.after = m_head;
+        m_size = 0;
+        m_hits = 0;
+        m_misses = 0;
+        m_evictions = 0;
+    }
+
+    // Returns the string for len bytes at src[off].
+
+    public String get(byte[] src, int off, int len, Charset charset) {
+        int hash = 1;
+        for (int ii=off; ii<off + len; ii++) {
+            hash = 31 * hash + src[ii];
+        }
+
+        int index = index(hash);
+        for (Entry e = m_table[index]; e != null; e = e.next) {
+            if (e.hash == hash && e.charset.equals(charset)
+                    && Arrays.equals(e.key, 0, e.key.length, src, off, off + len))
+                return hit(e);
+        }
+
+        m_misses++;
+        String value = Bytes.decode(src, off, len, charset);
+        add(index, hash, Arrays.copyOfRange(src, off, off + len), charset, value);
+        return value;
+    }
+
+    // Returns the string for len bytes at src's absolute offset off, leaving src's position alone.
+
+    public String get(ByteBuffer src, int off, int len, Charset charset) {
+        if (src.hasArray())
+            return get(src.array(), src.arrayOffset() + off, len, charset);
+
+        int hash = 1;
+        for (int ii=off; ii<off + len; ii++) {
+            hash = 31 * hash + src.get(ii);
+        }
+
+        int index = index(hash);
+        for (Entry e = m_table[index]; e != null; e = e.next) {
+            if (e.hash == hash && e.charset.equals(charset) && matches(e.key, src, off, len))
+                return hit(e);
+        }
+
+        m_misses++;
+        byte[] key = new byte[len];
+        src.get(off, key, 0, len);
+        String value = Bytes.decode(key, 0, len, charset);
+        add(index, hash, key, charset, value);
+        return value;
+    }
+
+    public String toString() {
+        return String.format("StringCache[%s %d/%d, hits %d, misses %d, evictions %d]",
+                             m_eviction, m_size, m_capacity, m_hits, m_misses, m_evictions);
+    }
+
+    private String hit(Entry e) {
+        m_hits++;
+        if (m_eviction == Eviction.LRU && m_head.after != e) {
+            unlink(e);
+            link(e);
+        }
+        return e.value;
+    }
+
+    private void add(int index, int hash, byte[] key, Charset charset, String value) {
+        if (m_size == m_capacity) {
+            if (m_eviction == Eviction.BOUNDED)
+                return;
+            remove(m_head.before);
+            m_evictions++;
+        }
+
+        Entry e = new Entry();
+        e.hash = hash;
+        e.key = key;
+        e.charset = charset;
+        e.value = value;
+        e.next = m_table[index];
+        m_table[index] = e;
+        link(e);
+        m_size++;
+    }
+
+    private void remove(Entry e) {
+        int index = index(e.hash);
+
+        if (m_table[index] == e) {
+            m_table[index] = e.next;
+        }
+        else {
+            Entry prev = m_table[index];
+            while (prev.next != e) {
+                prev = prev.next;
+            }
+            prev.next = e.next;
+        }
+
+        unlink(e);
+        m_size--;
+    }
+
+    private void link(Entry e) {
+        e.before = m_head;
+        e.after = m_head.after;
+        m_head.after.before = e;
+        m_head.after = e;
+    }
+
+    private static void unlink(Entry e) {
+        e.before.after = e.after;
+        e.after.before = e.before;
+    }
+
+    private int index(int hash) {
+        return (hash ^ (hash >>> 16)) & (m_table.length - 1);
+    }
+
+    private static boolean matches(byte[] key, ByteBuffer src, int off, int len) {
+        if (key.length != len)
+            return false;
+        for (int ii=0; ii<len; ii++) {
+            if (key[ii] != src.get(off + ii))
+                return false;
+        }
+        return true;
+    }
+
+    private static class Entry {
+        int hash;
+        byte[] key;
+        Charset charset;
+        String value;
+        Entry next;
+        Entry before;
+        Entry after;
+    }
+}
@@ -0,0 +1,67 @@
+package org.bodhi.fbc.impl;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+// Each access is one bounds checked load or store that the JIT intrinsifies, including the
+// byte swap where the platform order differs. The handles are static finals so they fold.
+
+public class VarHandleBigEndian extends Endian {
+    private static final VarHandle CHAR = MethodHandles.byteArrayViewVarHandle(char[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    ByteOrder getByteOrder() {
+        return ByteOrder.BIG_ENDIAN;
+    }
+
+    // -- get/put char --
+
+    char getUtfChar(byte[] bb, int offset) {
+        return (char) CHAR.get(bb, offset);
+    }
+
+    void putUtfChar(byte[] bb, int offset, char x) {
+        CHAR.set(bb, offset, x);
+    }
+
+    // -- get/put short --
+
+    int getInt2(byte[] bb, int offset) {
+        return (short) SHORT.get(bb, offset);
+    }
+
+    int getUInt2(byte[] bb, int offset) {
+        return ((short) SHORT.get(bb, offset)) & 0xffff;
+    }
+
+    void putInt2(byte[] bb, int offset, int x) {
+        SHORT.set(bb, offset, (short) x);
+    }
+
+    void putUInt2(byte[] bb, int offset, int x) {
+        SHORT.set(bb, offset, (short) x);
+    }
+
+    // -- get/put int --
+
+    int getInt4(byte[] bb, int offset) {
+        return (int) INT.get(bb, offset);
+    }
+
+    void putInt4(byte[] bb, int offset, int x) {
+        INT.set(bb, offset, x);
+    }
+
+    // -- get/put long --
+
+    long getInt8(byte[] bb, int offset) {
+        return (long) LONG.get(bb, offset);
+    }
+
+    void putInt8(byte[] bb, int offset, long x) {
+        LONG.set(bb, offset, x);
+    }
+}
@@ -0,0 +1,476 @@
+package org.bodhi.fbc.schema;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.RecordComponent;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import org.bodhi.fbc.BinaryReader;
+import org.bodhi.fbc.BinaryWriter;
+import org.bodhi.fbc.FieldType;
+import org.bodhi.fbc.impl.BinaryBuffer;
+
+// Slot is one compiled record component: its type, width, offset, padding and accessor are
+// all resolved once when the schema is compiled. The fast path is a method handle per slot
+// with those constants bound in, chained by StructCodec into one handle per record class;
+// the debug path switches on them for each field.
+
+final class Slot {
+    private static final int BOOLEAN = 0;
+    private static final int CHAR = 1;
+    private static final int BYTE = 2;
+    private static final int SHORT = 3;
+    private static final int INT = 4;
+    private static final int LONG = 5;
+    private static final int STRING = 6;
+    private static final int BYTES = 7;
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType READER = MethodType.methodType(Object.class, BinaryBuffer.class);
+    static final MethodType WRITER = MethodType.methodType(void.class, Object.class, BinaryBuffer.class);
+
+    private final String m_name;
+    private final FieldType m_type;
+    private final int m_kind;           // Java representation of one element
+    private final int m_width;          // bytes in one element
+    private final int m_count;          // elements, 0 for a scalar
+    private final int m_padBefore;
+    private final int m_padAfter;
+    private final int m_offset;         // of the first byte of the value within the struct
+    private final Class<?> m_javaType;  // of the component
+    private final byte m_fill;          // pads a STRING
+    private final MethodHandle m_accessor;
+    private final MethodHandle m_getter;        // (record) -> component, unboxed
+    private final String[] m_elementNames;
+    private final boolean m_bulk;       // an array the buffer can read and write in one call
+
+    Slot(RecordComponent component, int start, MethodHandles.Lookup lookup) {
+        Wire wire = component.getAnnotation(Wire.class);
+        if (null == wire)
+            throw new IllegalArgumentException("No @Wire on " + component);
+
+        m_name = component.getName();
+        m_type = wire.value();
+        m_count = wire.count();
+        m_padBefore = wire.padBefore();
+        m_padAfter = wire.padAfter();
+        m_offset = start + m_padBefore;
+        m_fill = wire.fill();
+        m_javaType = component.getType();
+
+        Class<?> javaType = m_javaType;
+
+        if (m_count > 0) {
+            if (!javaType.isArray() || !m_type.isFixedSize())
+                throw new IllegalArgumentException(m_name + ": count needs an array of a fixed size type");
+            javaType = javaType.getComponentType();
+        }
+
+        m_kind = kind(m_type, javaType, m_name);
+        m_width = m_type.isFixedSize() ? m_type.getSize() : wire.length();
+
+        if (m_width <= 0)
+            throw new IllegalArgumentException(m_name + ": " + m_type + " needs a length");
+
+        m_bulk = m_count > 0 && ((m_type == FieldType.SINT2 && m_kind == SHORT)
+                              || (m_type == FieldType.SINT4 && m_kind == INT)
+                              || (m_type == FieldType.SINT8 && m_kind == LONG));
+
+        m_elementNames = new String[m_count];
+        for (int ii=0; ii<m_count; ii++) {
+            m_elementNames[ii] = m_name + "[" + ii + "]";
+        }
+
+        try {
+            component.getAccessor().setAccessible(true);
+            m_getter = lookup.unreflect(component.getAccessor());
+            m_accessor = m_getter.asType(MethodType.methodType(Object.class, Object.class));
+        }
+        catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(m_name + ": accessor is not accessible", e);
+        }
+    }
+
+    String getName() {
+        return m_name;
+    }
+
+    int getOffset() {
+        return m_offset;
+    }
+
+    // Bytes from the start of the leading padding to the end of the trailing padding.
+
+    int size() {
+        return m_padBefore + m_width * Math.max(m_count, 1) + m_padAfter;
+    }
+
+    Object get(Object record) {
+        try {
+            return (Object) m_accessor.invokeExact(record);
+        }
+        catch (Throwable e) {
+            throw new IllegalStateException(m_name + ": accessor failed", e);
+        }
+    }
+
+    // -- fast path, method handles over the buffer --
+
+    // Returns (BinaryBuffer) -> component, reading at the buffer's position plus the slot's
+    // offset without moving the position. Scalars are read with primitive typed handles and
+    // never boxed.
+
+    MethodHandle reader(Charset charset) throws ReflectiveOperationException {
+        MethodHandle h;
+
+        if (STRING == m_kind) {
+            h = virtual("getString", String.class, int.class, int.class, Charset.class);
+            h = MethodHandles.insertArguments(h, 2, m_width, charset);
+        }
+        else if (BYTES == m_kind || m_count > 0) {
+            h = LOOKUP.findVirtual(Slot.class, "readArray", READER).bindTo(this);
+            return h.asType(MethodType.methodType(m_javaType, BinaryBuffer.class));
+        }
+        else {
+            h = getter();
+            h = (BOOLEAN == m_kind)
+                ? MethodHandles.filterReturnValue(h, LOOKUP.findStatic(Slot.class, "isTrue", MethodType.methodType(boolean.class, int.class)))
+                : MethodHandles.explicitCastArguments(h, MethodType.methodType(m_javaType, BinaryBuffer.class, int.class));
+        }
+
+        // (buffer, offset) -> (buffer, buffer) -> (buffer), offset being position + m_offset
+
+        MethodHandle position = virtual("getPosition", int.class);
+        MethodHandle add = MethodHandles.insertArguments(LOOKUP.findStatic(Slot.class, "add", MethodType.methodType(int.class, int.class, int.class)), 1, m_offset);
+        h = MethodHandles.filterArguments(h, 1, MethodHandles.filterReturnValue(position, add));
+        return MethodHandles.permuteArguments(h, MethodType.methodType(h.type().returnType(), BinaryBuffer.class), 0, 0);
+    }
+
+    // Returns (record, BinaryBuffer) -> void, writing the slot and its padding at the position.
+
+    MethodHandle writer(Charset charset) throws ReflectiveOperationException {
+        MethodHandle h;
+
+        if (STRING == m_kind) {
+            h = virtual("putString", void.class, CharSequence.class, int.class, Charset.class, byte.class);
+            h = MethodHandles.insertArguments(h, 2, m_width, charset, m_fill);
+            h = MethodHandles.filterArguments(h, 1, m_getter.asType(MethodType.methodType(CharSequence.class, Object.class)));
+        }
+        else if (BYTES == m_kind || m_count > 0) {
+            h = LOOKUP.findVirtual(Slot.class, "writeArray", MethodType.methodType(void.class, BinaryBuffer.class, Object.class)).bindTo(this);
+            h = MethodHandles.filterArguments(h, 1, m_accessor);
+        }
+        else {
+            h = putter();
+            h = MethodHandles.filterArguments(h, 1, MethodHandles.explicitCastArguments(m_getter, MethodType.methodType(h.type().parameterType(1), Object.class)));
+        }
+
+        h = MethodHandles.permuteArguments(h, WRITER, 1, 0);
+        return sequence(pad(m_padBefore), h, pad(m_padAfter));
+    }
+
+    // Runs the handles in order, nulls are skipped. Returns null when there are none.
+
+    static MethodHandle sequence(MethodHandle... handles) {
+        MethodHandle result = null;
+        for (int ii=handles.length - 1; ii>=0; ii--) {
+            if (null != handles[ii])
+                result = (null == result) ? handles[ii] : MethodHandles.foldArguments(result, handles[ii]);
+        }
+        return result;
+    }
+
+    private MethodHandle getter() throws ReflectiveOperationException {
+        switch (m_type) {
+            case UTF_CHAR: return virtual("getUtfChar", char.class, int.class);
+            case SINT2:    return virtual("getInt2", int.class, int.class);
+            case UINT2:    return virtual("getUInt2", int.class, int.class);
+            case SINT4:    return virtual("getInt4", int.class, int.class);
+            case SINT8:    return virtual("getInt8", long.class, int.class);
+            default:       return virtual("getInt1", int.class, int.class);
+        }
+    }
+
+    private MethodHandle putter() throws ReflectiveOperationException {
+        switch (m_type) {
+            case UTF_CHAR: return virtual("putUtfChar", void.class, char.class);
+            case SINT2:
+            case UINT2:    return virtual("putInt2", void.class, int.class);
+            case SINT4:    return virtual("putInt4", void.class, int.class);
+            case SINT8:    return virtual("putInt8", void.class, long.class);
+            default:       return virtual("putInt1", void.class, int.class);
+        }
+    }
+
+    private static MethodHandle pad(int n) throws ReflectiveOperationException {
+        if (0 == n)
+            return null;
+
+        MethodHandle h = LOOKUP.findStatic(Slot.class, "pad", MethodType.methodType(void.class, BinaryBuffer.class, int.class));
+        return MethodHandles.dropArguments(MethodHandles.insertArguments(h, 1, n), 0, Object.class);
+    }
+
+    private static MethodHandle virtual(String name, Class<?> result, Class<?>... parameters) throws ReflectiveOperationException {
+        return LOOKUP.findVirtual(BinaryBuffer.class, name, MethodType.methodType(result, parameters));
+    }
+
+    private static int add(int position, int offset) {
+        return position + offset;
+    }
+
+    private static boolean isTrue(int n) {
+        return n != 0;
+    }
+
+    // BYTES and arrays, read at the slot's offset with the position put back afterwards.
+
+    private Object readArray(BinaryBuffer buffer) {
+        int position = buffer.getPosition();
+
+        if (BYTES == m_kind) {
+            byte[] dst = new byte[m_width];
+            buffer.getBytes(position + m_offset, dst, 0, m_width);
+            return dst;
+        }
+
+        Object result = newArray();
+        buffer.setPosition(position + m_offset);
+        if (m_bulk) {
+            readArray(buffer, result);
+        }
+        else {
+            for (int ii=0; ii<m_count; ii++) {
+                store(result, ii, readNumber(buffer));
+            }
+        }
+        buffer.setPosition(position);
+        return result;
+    }
+
+    private void writeArray(BinaryBuffer buffer, Object value) {
+        if (BYTES == m_kind) {
+            putPadded(buffer, (byte[]) value, (byte) 0);
+        }
+        else if (m_bulk) {
+            writeArray(buffer, value, m_count);
+        }
+        else {
+            for (int ii=0; ii<m_count; ii++) {
+                writeNumber(buffer, load(value, ii));
+            }
+        }
+    }
+
+    // -- debug path, named calls so the reader or writer records a Trace --
+
+    Object read(BinaryReader reader) throws IOException {
+        reader.skip(m_padBefore);
+        Object result;
+
+        if (STRING == m_kind) {
+            result = reader.getString(m_width, m_name);
+        }
+        else if (BYTES == m_kind) {
+            result = reader.getBytes(m_width, m_name);
+        }
+        else if (m_count > 0) {
+            result = newArray();
+            for (int ii=0; ii<m_count; ii++) {
+                store(result, ii, readNumber(reader, m_elementNames[ii]));
+            }
+        }
+        else {
+            result = box(readNumber(reader, m_name));
+        }
+
+        reader.skip(m_padAfter);
+        return result;
+    }
+
+    void write(BinaryWriter writer, Object value) {
+        pad(writer, m_padBefore);
+
+        if (STRING == m_kind) {
+            byte padding = writer.getPadding();
+            writer.setPadding(m_fill);
+            writer.putString((String) value, m_width, m_name);
+            writer.setPadding(padding);
+        }
+        else if (BYTES == m_kind) {
+            byte[] bytes = (byte[]) value;
+            writer.putBytes(bytes.length == m_width ? bytes : Arrays.copyOf(bytes, m_width), m_name);
+        }
+        else if (m_count > 0) {
+            for (int ii=0; ii<m_count; ii++) {
+                writeNumber(writer, load(value, ii), m_elementNames[ii]);
+            }
+        }
+        else {
+            writeNumber(writer, unbox(value), m_name);
+        }
+
+        pad(writer, m_padAfter);
+    }
+
+    private void readArray(BinaryBuffer buffer, Object array) {
+        switch (m_kind) {
+            case SHORT: buffer.getInt2s((short[]) array, 0, m_count); break;
+            case INT:   buffer.getInt4s((int[]) array, 0, m_count); break;
+            default:    buffer.getInt8s((long[]) array, 0, m_count); break;
+        }
+    }
+
+    private void writeArray(BinaryBuffer buffer, Object array, int count) {
+        switch (m_kind) {
+            case SHORT: buffer.putInt2s((short[]) array, 0, count); break;
+            case INT:   buffer.putInt4s((int[]) array, 0, count); break;
+            default:    buffer.putInt8s((long[]) array, 0, count); break;
+        }
+    }
+
+    private long readNumber(BinaryBuffer buffer) {
+        switch (m_type) {
+            case UTF_CHAR: return buffer.getUtfChar();
+            case SINT2:    return buffer.getInt2();
+            case UINT2:    return buffer.getUInt2();
+            case SINT4:    return buffer.getInt4();
+            case SINT8:    return buffer.getInt8();
+            default:       return buffer.getInt1();
+        }
+    }
+
+    private long readNumber(BinaryReader reader, String name) throws IOException {
+        switch (m_type) {
+            case BOOL:     return reader.getBoolean(name) ? 1 : 0;
+            case UTF_CHAR: return reader.getUtfChar(name);
+            case SINT2:    return reader.getInt2(name);
+            case UINT2:    return reader.getUInt2(name);
+            case SINT4:    return reader.getInt4(name);
+            case SINT8:    return reader.getInt8(name);
+            default:       return reader.getInt1(name);
+        }
+    }
+
+    private void writeNumber(BinaryBuffer buffer, long n) {
+        switch (m_type) {
+            case UTF_CHAR: buffer.putUtfChar((char) n); break;
+            case SINT2:
+            case UINT2:    buffer.putInt2((int) n); break;
+            case SINT4:    buffer.putInt4((int) n); break;
+            case SINT8:    buffer.putInt8(n); break;
+            default:       buffer.putInt1((int) n);
+        }
+    }
+
+    private void writeNumber(BinaryWriter writer, long n, String name) {
+        switch (m_type) {
+            case BOOL:     writer.putBoolean(n != 0, name); break;
+            case UTF_CHAR: writer.putUtfChar((char) n, name); break;
+            case SINT2:    writer.putInt2((int) n, name); break;
+            case UINT2:    writer.putUInt2((int) n, name); break;
+            case SINT4:    writer.putInt4((int) n, name); break;
+            case SINT8:    writer.putInt8(n, name); break;
+            default:       writer.putInt1((int) n, name);
+        }
+    }
+
+    private void putPadded(BinaryBuffer buffer, byte[] bytes, byte fill) {
+        int n = Math.min(bytes.length, m_width);
+        buffer.putBytes(bytes, 0, n);
+        for (int ii=n; ii<m_width; ii++) {
+            buffer.putInt1(fill);
+        }
+    }
+
+    private static void pad(BinaryBuffer buffer, int n) {
+        for (int ii=0; ii<n; ii++) {
+            buffer.putInt1(0);
+        }
+    }
+
+    private static void pad(BinaryWriter writer, int n) {
+        for (int ii=0; ii<n; ii++) {
+            writer.putInt1(0);
+        }
+    }
+
+    private Object box(long n) {
+        switch (m_kind) {
+            case BOOLEAN: return n != 0;
+            case CHAR:    return (char) n;
+            case BYTE:    return (byte) n;
+            case SHORT:   return (short) n;
+            case INT:     return (int) n;
+            default:      return n;
+        }
+    }
+
+    private long unbox(Object value) {
+        switch (m_kind) {
+            case BOOLEAN: return ((Boolean) value) ? 1 : 0;
+            case CHAR:    return (Character) value;
+            default:      return ((Number) value).longValue();
+        }
+    }
+
+    private Object newArray() {
+        switch (m_kind) {
+            case BOOLEAN: return new boolean[m_count];
+            case CHAR:    return new char[m_count];
+            case BYTE:    return new byte[m_count];
+            case SHORT:   return new short[m_count];
+            case INT:     return new int[m_count];
+            default:      return new long[m_count];
+        }
+    }
+
+    private void store(Object array, int index, long n) {
+        switch (m_kind) {
+            case BOOLEAN: ((boolean[]) array)[index] = n != 0; break;
+            case CHAR:    ((char[]) array)[index] = (char) n; break;
+            case BYTE:    ((byte[]) array)[index] = (byte) n; break;
+            case SHORT:   ((short[]) array)[index] = (short) n; break;
+            case INT:     ((int[]) array)[index] = (int) n; break;
+            default:      ((long[]) array)[index] = n;
+        }
+    }
+
+    private long load(Object array, int index) {
+        switch (m_kind) {
+            case BOOLEAN: return ((boolean[]) array)[index] ? 1 : 0;
+            case CHAR:    return ((char[]) array)[index];
+            case BYTE:    return ((byte[]) array)[index];
+            case SHORT:   return ((short[]) array)[index];
+            case INT:     return ((int[]) array)[index];
+            default:      return ((long[]) array)[index];
+        }
+    }
+
+    private static int kind(FieldType type, Class<?> javaType, String name) {
+        switch (type) {
+            case BOOL:
+                if (boolean.class == javaType) return BOOLEAN;
+                break;
+            case UTF_CHAR:
+                if (char.class == javaType) return CHAR;
+                break;
+            case STRING:
+                if (String.class == javaType) return STRING;
+                break;
+            case BYTES:
+                if (byte[].class == javaType) return BYTES;
+                break;
+            default:
+                // A narrower component would truncate. UINT2 needs an int, as a short has no
+                // room for values past 32767.
+                int size = (FieldType.UINT2 == type) ? 4 : type.getSize();
+                if (byte.class == javaType && size <= 1) return BYTE;
+                if (short.class == javaType && size <= 2) return SHORT;
+                if (int.class == javaType && size <= 4) return INT;
+                if (long.class == javaType) return LONG;
+        }
+        throw new IllegalArgumentException(name + ": " + type + " can not be held in a " + javaType.getName());
+    }
+}
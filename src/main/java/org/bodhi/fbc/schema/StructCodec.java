@@ -0,0 +1,204 @@
+package org.bodhi.fbc.schema;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bodhi.fbc.BinaryReader;
+import org.bodhi.fbc.BinaryWriter;
+import org.bodhi.fbc.impl.BinaryBuffer;
+
+/**
+ * StructCodec encodes and decodes a record whose components carry @Wire annotations, the
+ * way a C struct is laid out. Each record class is compiled once into a table of slots with
+ * their offsets, widths and accessors resolved, and the table is shared by every codec for
+ * that class.
+ *
+ * decode(BinaryBuffer)/encode(T, BinaryBuffer) are the fast path: per class and charset the
+ * slots are chained into one method handle that reads every field at its fixed offset with a
+ * primitive typed read and hands the values straight to the canonical constructor, and one
+ * that writes the accessors' values in order. Nothing is boxed or looked up by name.
+ * decode(BinaryReader) and encode(T, BinaryWriter) use the named calls instead, so the usual
+ * Trace and dumps are available while debugging. Both paths encode the same bytes.
+ */
+public final class StructCodec<T extends Record> {
+    private static final ClassValue<Layout> LAYOUTS = new ClassValue<Layout>() {
+        @Override
+        protected Layout computeValue(Class<?> type) {
+            return new Layout(type);
+        }
+    };
+
+    private final Layout m_layout;
+    private final MethodHandle m_decoder;     // (BinaryBuffer) -> Object
+    private final MethodHandle m_encoder;     // (Object, BinaryBuffer) -> void
+
+    private StructCodec(Layout layout, Charset charset) {
+        m_layout = layout;
+
+        MethodHandle[] handles = layout.compile(charset);
+        m_decoder = handles[0];
+        m_encoder = handles[1];
+    }
+
+    public static <T extends Record> StructCodec<T> of(Class<T> type, Charset charset) {
+        return new StructCodec<T>(LAYOUTS.get(type), charset);
+    }
+
+    // Returns the size of the struct in bytes, padding included.
+
+    public int size() {
+        return m_layout.m_size;
+    }
+
+    // Returns the offset of the named component within the struct.
+
+    public int offsetOf(String name) {
+        for (Slot slot : m_layout.m_slots) {
+            if (slot.getName().equals(name))
+                return slot.getOffset();
+        }
+        throw new IllegalArgumentException("No field " + name + " in " + m_layout.m_type.getName());
+    }
+
+    // Decodes the struct at the buffer's position and moves past it.
+
+    @SuppressWarnings("unchecked")
+    public T decode(BinaryBuffer buffer) {
+        if (buffer.available() < m_layout.m_size)
+            throw new IndexOutOfBoundsException(m_layout.m_size + " bytes at " + buffer.getPosition() + ", limit is " + buffer.getLimit());
+
+        T result;
+        try {
+            result = (T) (Object) m_decoder.invokeExact(buffer);
+        }
+        catch (RuntimeException | Error e) {
+            throw e;
+        }
+        catch (Throwable e) {
+            throw new IllegalStateException("Can not decode " + m_layout.m_type.getName(), e);
+        }
+        buffer.skip(m_layout.m_size);
+        return result;
+    }
+
+    public void encode(T value, BinaryBuffer buffer) {
+        try {
+            m_encoder.invokeExact((Object) value, buffer);
+        }
+        catch (RuntimeException | Error e) {
+            throw e;
+        }
+        catch (Throwable e) {
+            throw new IllegalStateException("Can not encode " + m_layout.m_type.getName(), e);
+        }
+    }
+
+    public T decode(BinaryReader reader) throws IOException {
+        Slot[] slots = m_layout.m_slots;
+        Object[] values = new Object[slots.length];
+
+        for (int ii=0; ii<slots.length; ii++) {
+            values[ii] = slots[ii].read(reader);
+        }
+        return create(values);
+    }
+
+    public void encode(T value, BinaryWriter writer) {
+        for (Slot slot : m_layout.m_slots) {
+            slot.write(writer, slot.get(value));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T create(Object[] values) {
+        try {
+            return (T) (Object) m_layout.m_constructor.invokeExact(values);
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Throwable e) {
+            throw new IllegalStateException("Can not create " + m_layout.m_type.getName(), e);
+        }
+    }
+
+    // The compiled form of one record class.
+
+    private static final class Layout {
+        private final Class<?> m_type;
+        private final Slot[] m_slots;
+        private final MethodHandle m_constructor; // (Object[]) -> Object
+        private final MethodHandle m_canonical;   // (component types) -> Object
+        private final int m_size;
+        private final Map<Charset, MethodHandle[]> m_compiled = new ConcurrentHashMap<>();
+
+        Layout(Class<?> type) {
+            if (!type.isRecord())
+                throw new IllegalArgumentException(type.getName() + " is not a record");
+
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            RecordComponent[] components = type.getRecordComponents();
+            Class<?>[] types = new Class<?>[components.length];
+
+            m_type = type;
+            m_slots = new Slot[components.length];
+
+            int offset = 0;
+            for (int ii=0; ii<components.length; ii++) {
+                m_slots[ii] = new Slot(components[ii], offset, lookup);
+                offset += m_slots[ii].size();
+                types[ii] = components[ii].getType();
+            }
+            m_size = offset;
+
+            try {
+                Constructor<?> constructor = type.getDeclaredConstructor(types);
+                constructor.setAccessible(true);
+                MethodHandle canonical = lookup.unreflectConstructor(constructor);
+                m_canonical = canonical.asType(canonical.type().changeReturnType(Object.class));
+                m_constructor = m_canonical.asSpreader(Object[].class, components.length)
+                                           .asType(MethodType.methodType(Object.class, Object[].class));
+            }
+            catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException(type.getName() + ": canonical constructor is not accessible", e);
+            }
+        }
+
+        // Returns the decoder and encoder handles for charset, building them the first time.
+
+        MethodHandle[] compile(Charset charset) {
+            return m_compiled.computeIfAbsent(charset, this::build);
+        }
+
+        private MethodHandle[] build(Charset charset) {
+            try {
+                // Each constructor argument is filled in by its slot's reader, and then every
+                // reader is handed the same buffer.
+
+                MethodHandle decoder = m_canonical;
+                MethodHandle[] writers = new MethodHandle[m_slots.length];
+                for (int ii=m_slots.length - 1; ii>=0; ii--) {
+                    decoder = MethodHandles.collectArguments(decoder, ii, m_slots[ii].reader(charset));
+                    writers[ii] = m_slots[ii].writer(charset);
+                }
+                decoder = MethodHandles.permuteArguments(decoder, MethodType.methodType(Object.class, BinaryBuffer.class),
+                                                         new int[m_slots.length]);
+
+                MethodHandle encoder = Slot.sequence(writers);
+                if (null == encoder)
+                    encoder = MethodHandles.empty(Slot.WRITER);
+
+                return new MethodHandle[] { decoder, encoder };
+            }
+            catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(m_type.getName() + ": can not compile the codec", e);
+            }
+        }
+    }
+}
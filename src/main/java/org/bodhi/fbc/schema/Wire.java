@@ -0,0 +1,40 @@
+package org.bodhi.fbc.schema;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import org.bodhi.fbc.FieldType;
+
+/**
+ * Wire describes how a record component is laid out, like a member of a C struct.
+ * Components are laid out in declaration order with no implicit alignment; use padBefore
+ * and padAfter to reproduce the padding a C compiler would add. A component must be wide
+ * enough for its wire type, e.g. a long for SINT8 and an int or long for UINT2.
+ *
+ *   record Quote(@Wire(value = FieldType.STRING, length = 8) String symbol,
+ *                @Wire(value = FieldType.SINT4, count = 4) int[] prices,
+ *                @Wire(value = FieldType.SINT2, padAfter = 2) short flags) { }
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.RECORD_COMPONENT)
+public @interface Wire {
+
+    FieldType value();
+
+    // Width in bytes of a STRING or BYTES field. Strings are space padded and trimmed.
+
+    int length() default 0;
+
+    // The byte that pads a STRING, a space by default. C strings usually want 0.
+
+    byte fill() default ' ';
+
+    // Number of elements when the component is an array of a fixed size type, 0 for a scalar.
+
+    int count() default 0;
+
+    int padBefore() default 0;
+
+    int padAfter() default 0;
+}
@@ -0,0 +1,122 @@
+package org.bodhi.fbc;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BinaryDiffTest {
+    private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+
+    @Test
+    public void test_regions() {
+        byte[] actual = bytes(32);
+        byte[] expected = actual.clone();
+        expected[5] = 99;
+        expected[6] = 99;
+        expected[20] = 99;
+
+        List<BinaryDiff.Region> regions = new BinaryDiff(2).compare(trace(32), actual, expected);
+
+        assertEquals(2, regions.size());
+        assertEquals("[5, 7) F4", regions.get(0).toString());
+        assertEquals(4, regions.get(0).getFieldPosition());
+        assertEquals(20, regions.get(1).getOffset());
+        assertEquals(1, regions.get(1).getLength());
+        assertEquals("F20", regions.get(1).getField());
+    }
+
+    @Test
+    public void test_length_difference_is_one_region() {
+        byte[] actual = bytes(10);
+        byte[] expected = bytes(13);
+
+        List<BinaryDiff.Region> regions = new BinaryDiff(0).compare(new Trace(), actual, expected);
+
+        assertEquals(1, regions.size());
+        assertEquals("[10, 13)", regions.get(0).toString());
+        assertTrue(new BinaryDiff(0).compare(new Trace(), actual, actual.clone()).isEmpty());
+    }
+
+    @Test
+    public void test_render_only_regions() {
+        byte[] actual = Utils.toBytes(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        byte[] expected = Utils.toBytes(0, 1, 2, 3, 4, 5, 9, 7, 8, 9);
+        Trace trace = new Trace();
+        trace.trace(4, "F4", "Comment");
+
+        String actualText = new BinaryDiff(1).toString(trace, actual, expected);
+
+        String expectedText =
+                "      Off                Field Actual Expected\n" +
+                "     ... F4 from 4\n" +
+                "   5 0x0005                      0x05 0x05   \n" +
+                "   6 0x0006                      0x06 0x09 * \n" +
+                "   7 0x0007                      0x07 0x07   \n" +
+                "     ...\n";
+
+        assertEquals(expectedText, actualText);
+        assertEquals("", new BinaryDiff(1).toString(trace, actual, actual.clone()));
+    }
+
+    @Test
+    public void test_close_regions_share_context() throws Exception {
+        byte[] actual = bytes(20);
+        byte[] expected = actual.clone();
+        expected[3] = 99;
+        expected[7] = 99;
+        Trace trace = trace(20);
+
+        StringBuilder b = new StringBuilder(HexDump.DIFF_HEADER);
+        b.append("     ... F0 from 0\n");
+        new HexDump(trace).diff(actual, expected, 1, 9, b);
+        b.append("     ...\n");
+
+        assertEquals(b.toString(), new BinaryDiff(2).toString(trace, actual, expected));
+    }
+
+    @Test
+    public void test_writer_compares_in_place() throws Exception {
+        BinaryWriter heap = new BinaryWriter(LATIN_1, TraceMode.FULL);
+        BinaryWriter direct = new BinaryWriter(ByteBuffer.allocateDirect(64), LATIN_1, TraceMode.FULL);
+
+        for (BinaryWriter writer : new BinaryWriter[] { heap, direct }) {
+            writer.putInt4(25, "Length");
+            writer.putInt8(3L, "Value");
+
+            byte[] raw = writer.getBytes();
+            assertEquals(-1, writer.mismatch(raw, 0));
+            assertEquals(8, writer.mismatch(Arrays.copyOf(raw, 8), 0));
+            assertTrue(Utils.isEqual(writer, raw));
+            assertEquals("", Utils.toString(writer, raw, 2));
+
+            raw[10] = 1;
+            assertEquals(10, writer.mismatch(raw, 0));
+            assertEquals(-1, writer.mismatch(raw, 11));
+            assertFalse(Utils.isEqual(writer, raw));
+
+            List<BinaryDiff.Region> regions = new BinaryDiff(2).compare(writer, raw);
+            assertEquals(1, regions.size());
+            assertEquals("[10, 11) Value", regions.get(0).toString());
+        }
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int ii=0; ii<length; ii++) {
+            bytes[ii] = (byte) ii;
+        }
+        return bytes;
+    }
+
+    private static Trace trace(int length) {
+        Trace trace = new Trace();
+        for (int ii=0; ii<length; ii+=4) {
+            trace.trace(ii, "F" + ii, FieldType.SINT4, 4);
+        }
+        return trace;
+    }
+}
@@ -1,5 +1,7 @@
 package org.bodhi.fbc;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.Charset;
 import org.junit.Test;
 
@@ -171,4 +173,166 @@ public class BinaryTest {
         br.moveToPosition(5);
         assertEquals(15, br.getInt1());
     }
+
+    @Test
+    public void test_labels_only() throws Exception {
+        BinaryWriter bw = new BinaryWriter(Charset.forName("ISO-8859-1"), TraceMode.LABELS_ONLY);
+
+        bw.label("Msg Start");
+        bw.putInt4(0, "header_length");
+        bw.putInt8(3L, "Field 1");
+        bw.label("Msg End");
+        bw.replaceInt4("header_length", bw.diff("Msg End", "Msg Start"));
+
+        assertEquals(4, bw.getPosition("Field 1"));
+        assertFalse(bw.getTrace().hasField(4));
+        assertFalse(bw.getTrace().hasComment(0));
+
+        BinaryReader br = new BinaryReader(bw.getBytes(), Charset.forName("ISO-8859-1"), TraceMode.LABELS_ONLY);
+        assertEquals(12, br.getInt4("header_length"));
+        assertEquals(3L, br.getInt8("Field 1"));
+        assertEquals(4, br.getPosition("Field 1"));
+        assertFalse(br.getTrace().hasField(4));
+    }
+
+    @Test
+    public void test_trace_off() throws Exception {
+        BinaryWriter bw = new BinaryWriter(Charset.forName("ISO-8859-1"), TraceMode.OFF);
+
+        bw.label("Msg Start");
+        bw.putInt4(7, "Field 1");
+        bw.putString("Two", 5, "Field 2");
+
+        assertFalse(bw.getTrace().hasField(0));
+        assertFalse(bw.getTrace().hasComment(4));
+
+        BinaryReader br = new BinaryReader(bw.getBytes(), Charset.forName("ISO-8859-1"), TraceMode.OFF);
+        assertEquals(7, br.getInt4("Field 1"));
+        assertEquals("Two", br.getString(5, "Field 2"));
+        assertFalse(br.getTrace().hasField(0));
+    }
+
+    @Test
+    public void test_trace_comments() throws Exception {
+        BinaryWriter bw = new BinaryWriter(Charset.forName("ISO-8859-1"));
+
+        bw.putInt4(0, "header_length");
+        bw.putString("Two", 10, "Field 1");
+        bw.replaceInt4("header_length", 14);
+
+        Trace writerTrace = bw.getTrace();
+        assertEquals("// SInt4: 0 (Replaced with SInt4 14)", writerTrace.getComment(0));
+        assertEquals("// String[10]: 'Two'", writerTrace.getComment(4));
+
+        BinaryReader br = new BinaryReader(bw.getBytes(), Charset.forName("ISO-8859-1"));
+        br.getInt4("header_length");
+        br.getString(10, "Field 1");
+
+        Trace readerTrace = br.getTrace();
+        assertEquals("// SInt4: 14", readerTrace.getComment(0));
+        assertEquals("// String[10]: 'Two'", readerTrace.getComment(4));
+    }
+
+    @Test
+    public void test_bulk_arrays_trace_once() throws Exception {
+        BinaryWriter bw = new BinaryWriter(Charset.forName("ISO-8859-1"));
+
+        bw.putInt4s(new int[] { 10, 20, 30 }, 0, 3, "prices");
+        bw.putInt2s(new short[] { 1, 2 }, 0, 2, "levels");
+
+        Trace writerTrace = bw.getTrace();
+        assertEquals("// SInt4[3]", writerTrace.getComment(0));
+        assertEquals("levels", writerTrace.getField(12));
+        assertFalse(writerTrace.hasComment(4));
+
+        BinaryReader br = new BinaryReader(bw.getBytes(), Charset.forName("ISO-8859-1"));
+        int[] prices = new int[3];
+        short[] levels = new short[2];
+        br.getInt4s(prices, 0, 3, "prices");
+        br.getInt2s(levels, 0, 2, "levels");
+
+        assertArrayEquals(new int[] { 10, 20, 30 }, prices);
+        assertArrayEquals(new short[] { 1, 2 }, levels);
+        assertEquals("// SInt2[2]", br.getTrace().getComment(12));
+    }
+
+    @Test
+    public void test_byte_buffer() throws Exception {
+        ByteBuffer frame = ByteBuffer.allocateDirect(32);
+
+        BinaryWriter bw = new BinaryWriter(frame, Charset.forName("ISO-8859-1"), TraceMode.FULL);
+        bw.putInt4(0, "header_length");
+        bw.putString("One", 5, "Field 1");
+        bw.putInt8(3L, "Field 2");
+        bw.replaceInt4("header_length", 17);
+        frame.limit(bw.getLength());
+
+        BinaryReader br = new BinaryReader(frame.asReadOnlyBuffer(), Charset.forName("ISO-8859-1"));
+        assertEquals(17, br.getInt4("header_length"));
+        assertEquals("One", br.getString(5, "Field 1"));
+        assertEquals(3L, br.getInt8("Field 2"));
+        assertArrayEquals(bw.getBytes(), br.getBytes());
+    }
+
+    @Test
+    public void test_reset_within_array() throws Exception {
+        byte[] msg = toBytes(9, 9, 9, 9, 0, 0, 0, 7);
+
+        BinaryReader br = new BinaryReader(new byte[0], Charset.forName("ISO-8859-1"), TraceMode.FULL);
+        br.reset(msg, 4, 4);
+        assertEquals(7, br.getInt4("x"));
+        assertEquals(0, br.getPosition("x"));
+        assertArrayEquals(toBytes(0, 0, 0, 7), br.getBytes());
+
+        br.clear();
+        assertEquals(7, br.getInt4());
+    }
+
+    @Test
+    public void test_reset_keeps_byte_order() throws Exception {
+        byte[] msg = toBytes(9, 9, 7, 0, 0, 0);
+
+        BinaryReader br = new BinaryReader(ByteBuffer.allocate(0), Charset.forName("ISO-8859-1"));
+        br.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        br.reset(msg, 2, 4);
+        assertEquals(ByteOrder.LITTLE_ENDIAN, br.getByteOrder());
+        assertEquals(7, br.getInt4());
+
+        BinaryWriter bw = new BinaryWriter(ByteBuffer.allocate(8), Charset.forName("ISO-8859-1"), TraceMode.OFF);
+        bw.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        byte[] dst = new byte[6];
+        bw.reset(dst, 2, 4);
+        bw.putInt4(7);
+        assertEquals(4, bw.getLength());
+        assertArrayEquals(toBytes(0, 0, 7, 0, 0, 0), dst);
+    }
+
+    @Test
+    public void test_little_endian() throws Exception {
+        BinaryWriter bw = new BinaryWriter(Charset.forName("ISO-8859-1"), ByteOrder.LITTLE_ENDIAN);
+        bw.putInt4(0x01020304, "Field 1");
+        bw.putInt2(0x0506, "Field 2");
+
+        assertArrayEquals(toBytes(4, 3, 2, 1, 6, 5), bw.getBytes());
+
+        BinaryReader br = new BinaryReader(bw.getBytes(), Charset.forName("ISO-8859-1"), ByteOrder.LITTLE_ENDIAN);
+        assertEquals(ByteOrder.LITTLE_ENDIAN, br.getByteOrder());
+        assertEquals(0x01020304, br.getInt4("Field 1"));
+        assertEquals(0x0506, br.getInt2("Field 2"));
+    }
+
+    @Test
+    public void test_mixed_endian() throws Exception {
+        BinaryWriter bw = new BinaryWriter(Charset.forName("ISO-8859-1"));
+        bw.putInt2(0x0102, "header");
+        bw.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        bw.putInt4(0x03040506, "body");
+
+        assertArrayEquals(toBytes(1, 2, 6, 5, 4, 3), bw.getBytes());
+
+        BinaryReader br = new BinaryReader(bw.getBytes(), Charset.forName("ISO-8859-1"));
+        assertEquals(0x0102, br.getInt2("header"));
+        br.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(0x03040506, br.getInt4("body"));
+    }
 }
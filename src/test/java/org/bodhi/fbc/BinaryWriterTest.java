@@ -1,6 +1,7 @@
 package org.bodhi.fbc;
 
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -22,4 +23,47 @@ public class BinaryWriterTest {
         }
     }
 
-}
\ No newline at end of file
+
+    @Test
+    public void test_reusable_backing_array() throws Exception {
+        byte[] backing = new byte[16];
+        BinaryWriter bw = new BinaryWriter(backing, Charset.forName("ISO-8859-1"), TraceMode.OFF);
+
+        bw.putInt4(0x01020304, "Field 1");
+        bw.putString("ab", 3, "Field 2");
+
+        assertEquals(7, bw.getLength());
+        assertArrayEquals(Utils.toBytes(1, 2, 3, 4, 'a', 'b', ' '), Arrays.copyOf(backing, 7));
+
+        byte[] dst = new byte[7];
+        assertEquals(7, bw.getBytes(dst, 0));
+        assertArrayEquals(bw.getBytes(), dst);
+    }
+
+    @Test
+    public void test_large_message() throws Exception {
+        BinaryWriter bw = new BinaryWriter(32, Charset.forName("ISO-8859-1"));
+
+        for (int ii=0; ii<(1 << 18); ii++) {
+            bw.putInt4(ii);
+        }
+
+        assertEquals(1 << 20, bw.getLength());
+    }
+
+    @Test
+    public void test_string_padding() throws Exception {
+        BinaryWriter bw = new BinaryWriter(Charset.forName("ISO-8859-1"));
+
+        bw.putString("ab", 3, "Field 1");
+        bw.setPadding((byte) 0);
+        bw.putString("cd", 3, "Field 2");
+        bw.putString("efgh", 3);
+
+        assertArrayEquals(Utils.toBytes('a', 'b', ' ', 'c', 'd', 0, 'e', 'f', 'g'), bw.getBytes());
+
+        BinaryReader br = new BinaryReader(bw.getBytes(), Charset.forName("ISO-8859-1"));
+        assertEquals("ab", br.getString(3, "Field 1"));
+        assertEquals("cd", br.getString(3, "Field 2"));
+    }
+}
@@ -0,0 +1,68 @@
+package org.bodhi.fbc;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.bodhi.fbc.Utils.*;
+
+public class CodecPoolTest {
+    private static final Charset CHARSET = StandardCharsets.ISO_8859_1;
+
+    @Test
+    public void test_reader_is_reused() throws Exception {
+        CodecPool pool = new CodecPool(CHARSET, TraceMode.FULL);
+
+        BinaryReader first = pool.reader(toBytes(0, 1, 0, 2));
+        assertEquals(1, first.getInt2("A"));
+        assertEquals(2, first.getInt2("B"));
+
+        BinaryReader second = pool.reader(toBytes(9, 0, 0, 0, 5), 1, 4);
+        assertSame(first, second);
+        assertEquals(5, second.getInt4("C"));
+        assertEquals(0, second.getPosition("C"));
+        assertFalse(second.getTrace().hasField(2));
+    }
+
+    @Test
+    public void test_writer_is_cleared() throws Exception {
+        CodecPool pool = new CodecPool(CHARSET, TraceMode.FULL);
+
+        BinaryWriter first = pool.writer();
+        first.putInt4(1, "A");
+        first.putString("Hello", 8, "B");
+
+        BinaryWriter second = pool.writer();
+        assertSame(first, second);
+        second.putInt2(3, "C");
+
+        assertArrayEquals(toBytes(0, 3), second.getBytes());
+        assertEquals("C", second.getTrace().getField(0));
+        assertFalse(second.getTrace().hasField(4));
+    }
+
+    @Test
+    public void test_threads_get_their_own() throws Exception {
+        CodecPool pool = new CodecPool(CHARSET, TraceMode.OFF);
+        BinaryWriter[] other = new BinaryWriter[1];
+
+        Thread thread = new Thread(() -> other[0] = pool.writer());
+        thread.start();
+        thread.join();
+
+        assertNotNull(other[0]);
+        assertNotSame(other[0], pool.writer());
+    }
+
+    @Test
+    public void test_writer_reset_onto_array() throws Exception {
+        BinaryWriter writer = new BinaryWriter(CHARSET, TraceMode.OFF);
+        byte[] target = new byte[2];
+
+        writer.reset(target);
+        writer.putInt2(0x0102);
+
+        assertArrayEquals(toBytes(1, 2), target);
+    }
+}
@@ -0,0 +1,77 @@
+package org.bodhi.fbc;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class CorpusRunnerTest {
+    private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test_run() throws Exception {
+        write("a.in", "25".getBytes(LATIN_1));
+        write("a.bin", Utils.toBytes(0, 0, 0, 25));
+        write("b.in", "7".getBytes(LATIN_1));
+        write("b.bin", Utils.toBytes(0, 0, 0, 8));
+        write("c.in", "x".getBytes(LATIN_1));
+        write("c.bin", Utils.toBytes(0));
+        write("d.in", "1".getBytes(LATIN_1));
+        write("notes.txt", "ignored".getBytes(LATIN_1));
+
+        CorpusRunner.Report report = new CorpusRunner(".in", ".bin", input -> {
+            BinaryWriter writer = new BinaryWriter(LATIN_1, TraceMode.FULL);
+            writer.putInt4(Integer.parseInt(new String(input, LATIN_1)), "Value");
+            return writer;
+        }, 2).run(folder.getRoot().toPath());
+
+        assertEquals(4, report.getResults().size());
+        assertFalse(report.isPassed());
+        assertEquals("a", report.getResults().get(0).getName());
+        assertTrue(report.getResults().get(0).isPassed());
+        assertNull(report.getResults().get(0).getDiff());
+
+        assertEquals(3, report.getFailures().size());
+        assertTrue(report.getFailures().get(0).getDiff().contains("   0 0x0000                Value 0x00 0x00   // SInt4: 7\n"));
+        assertTrue(report.getFailures().get(0).getDiff().contains("   3 0x0003                      0x07 0x08 * "));
+        assertTrue(report.getFailures().get(1).getDiff().startsWith("java.lang.NumberFormatException"));
+        assertEquals("No expected file d.bin", report.getFailures().get(2).getDiff());
+
+        String summary = report.toString();
+        assertTrue(summary.startsWith("4 messages, 1 passed, 3 failed in "));
+        assertTrue(summary.contains("FAILED b\n"));
+    }
+
+    // An expected "file" that is a directory can not be read, even by root.
+
+    @Test
+    public void test_unreadable_file_fails_its_message() throws Exception {
+        write("a.in", "25".getBytes(LATIN_1));
+        folder.newFolder("a.bin");
+        write("b.in", "7".getBytes(LATIN_1));
+        write("b.bin", Utils.toBytes(0, 0, 0, 7));
+
+        CorpusRunner.Report report = new CorpusRunner(".in", ".bin", input -> {
+            BinaryWriter writer = new BinaryWriter(LATIN_1, TraceMode.OFF);
+            writer.putInt4(Integer.parseInt(new String(input, LATIN_1)));
+            return writer;
+        }, 2).run(folder.getRoot().toPath());
+
+        assertEquals(2, report.getResults().size());
+        assertEquals(1, report.getFailures().size());
+        assertEquals("a", report.getFailures().get(0).getName());
+        assertTrue(report.getFailures().get(0).getDiff().startsWith("Unreadable: "));
+        assertTrue(report.getResults().get(1).isPassed());
+    }
+
+    private void write(String name, byte[] bytes) throws Exception {
+        Files.write(new File(folder.getRoot(), name).toPath(), bytes);
+    }
+}
@@ -0,0 +1,85 @@
+package org.bodhi.fbc;
+
+import java.nio.charset.Charset;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FieldDiffTest {
+    private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+
+    @Test
+    public void test_shifted_fields_are_matched() throws Exception {
+        BinaryWriter old = message("abc", 6);
+        BinaryWriter now = message("abcdef", 8);
+        now.putInt8(9L, "Extra");
+
+        List<FieldDiff.Change> changes = FieldDiff.compare(old, now);
+
+        assertEquals(3, changes.size());
+        assertEquals("CHANGED Name 'abc' -> 'abcdef' (offset 4)", changes.get(0).toString());
+        assertEquals("CHANGED Price[1] 6 -> 8 (offset 15 -> 18)", changes.get(1).toString());
+        assertEquals("ADDED Extra 9 (offset 22)", changes.get(2).toString());
+
+        assertEquals(FieldDiff.Kind.CHANGED, changes.get(1).getKind());
+        assertEquals(1, changes.get(1).getOccurrence());
+        assertEquals("6", changes.get(1).getOldValue());
+        assertEquals(-1, changes.get(2).getOldPosition());
+    }
+
+    @Test
+    public void test_same_message() throws Exception {
+        assertTrue(FieldDiff.compare(message("abc", 6), message("abc", 6)).isEmpty());
+    }
+
+    @Test
+    public void test_removed_repeats() throws Exception {
+        BinaryWriter old = message("abc", 6);
+        old.putInt4(1, "Price");
+        old.putInt4(2, "Gone");
+
+        List<FieldDiff.Change> changes = FieldDiff.compare(old, message("abc", 6));
+
+        assertEquals(2, changes.size());
+        assertEquals("REMOVED Price[2] 1 (offset 19)", changes.get(0).toString());
+        assertEquals("REMOVED Gone 2 (offset 23)", changes.get(1).toString());
+    }
+
+    @Test
+    public void test_replaced_bytes_count() throws Exception {
+        BinaryWriter old = message("abc", 6);
+        BinaryWriter now = message("abc", 6);
+        now.replaceInt4("Id", 2);
+
+        List<FieldDiff.Change> changes = FieldDiff.compare(old, now);
+
+        assertEquals(1, changes.size());
+        assertEquals("CHANGED Id 0x00000001 -> 0x00000002 (offset 0)", changes.get(0).toString());
+    }
+
+    @Test
+    public void test_untyped_fields_compare_bytes() {
+        Trace trace = new Trace();
+        trace.trace(0, "Header", "free text");
+        trace.trace(3, "Body", "free text");
+
+        byte[] old = Utils.toBytes(1, 2, 3, 4, 5);
+        byte[] now = Utils.toBytes(1, 2, 3, 4, 6);
+
+        List<FieldDiff.Change> changes = FieldDiff.compare(trace, old, trace, now);
+
+        assertEquals(1, changes.size());
+        assertEquals("CHANGED Body 0x0405 -> 0x0406 (offset 3)", changes.get(0).toString());
+    }
+
+    private static BinaryWriter message(String name, int price) throws Exception {
+        BinaryWriter writer = new BinaryWriter(LATIN_1, TraceMode.FULL);
+        writer.putInt4(1, "Id");
+        writer.putString(name, "Name");
+        writer.putInt4(7, "Qty");
+        writer.putInt4(5, "Price");
+        writer.putInt4(price, "Price");
+        return writer;
+    }
+}
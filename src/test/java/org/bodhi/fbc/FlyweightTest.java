@@ -0,0 +1,65 @@
+package org.bodhi.fbc;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import org.bodhi.fbc.impl.Buffer;
+import org.bodhi.fbc.impl.NioBuffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FlyweightTest {
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+    private static final byte[] IBM = "IBM".getBytes(CHARSET);
+
+    static class QuoteView extends Flyweight {
+        public int size()          { return 16; }
+        public String symbol()     { return getString(0, 4, CHARSET); }
+        public boolean isIbm()     { return isString(0, 4, IBM); }
+        public int price()         { return getInt4(4); }
+        public long time()         { return getInt8(8); }
+    }
+
+    private static byte[] quotes() {
+        BinaryWriter bw = new BinaryWriter(CHARSET);
+        bw.putString("IBM", 4, "symbol");
+        bw.putInt4(100, "price");
+        bw.putInt8(1L, "time");
+        bw.putString("AAPL", 4, "symbol");
+        bw.putInt4(200, "price");
+        bw.putInt8(2L, "time");
+        return bw.getBytes();
+    }
+
+    @Test
+    public void test_view_reads_in_place() {
+        Buffer buffer = new Buffer(quotes());
+        QuoteView view = new QuoteView();
+
+        view.wrap(buffer, 0);
+        assertTrue(view.isIbm());
+        assertEquals("IBM", view.symbol());
+        assertEquals(100, view.price());
+        assertEquals(0, buffer.getPosition());
+
+        assertTrue(view.next());
+        assertFalse(view.isIbm());
+        assertEquals("AAPL", view.symbol());
+        assertEquals(200, view.price());
+        assertEquals(2L, view.time());
+
+        assertFalse(view.next());
+    }
+
+    @Test
+    public void test_view_over_direct_buffer() {
+        ByteBuffer direct = ByteBuffer.allocateDirect(32);
+        direct.put(quotes()).flip();
+
+        QuoteView view = new QuoteView();
+        view.wrap(new NioBuffer(direct), 16);
+
+        assertEquals("AAPL", view.symbol());
+        assertEquals(200, view.price());
+    }
+}
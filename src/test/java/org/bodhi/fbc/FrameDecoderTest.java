@@ -0,0 +1,112 @@
+package org.bodhi.fbc;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameDecoderTest {
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+    @Test
+    public void test_batches_in_place() throws Exception {
+        byte[] bytes = frames(FrameDecoder.Prefix.INT4, ByteOrder.BIG_ENDIAN, false, "one", "", "three", "four", "five");
+        FrameDecoder decoder = new FrameDecoder(FrameDecoder.Prefix.INT4, ByteOrder.BIG_ENDIAN, false, 1024, 2);
+        List<String> payloads = new ArrayList<String>();
+        int[] batches = new int[1];
+
+        int frames = decoder.decode(bytes, 0, bytes.length, batch -> {
+            batches[0]++;
+            collect(batch, payloads);
+        });
+
+        assertEquals(5, frames);
+        assertEquals(3, batches[0]);
+        assertEquals(List.of("one", "", "three", "four", "five"), payloads);
+        assertEquals(0, decoder.getPending());
+    }
+
+    @Test
+    public void test_little_endian_inclusive_uint2() throws Exception {
+        byte[] bytes = Utils.toBytes(5, 0, 'a', 'b', 'c', 2, 0);
+        FrameDecoder decoder = new FrameDecoder(FrameDecoder.Prefix.UINT2, ByteOrder.LITTLE_ENDIAN, true);
+        List<String> payloads = new ArrayList<String>();
+
+        decoder.decode(bytes, 0, bytes.length, batch -> {
+            collect(batch, payloads);
+            assertEquals(2, batch.getOffset(0));
+            assertEquals("abc", batch.reader(0, CHARSET, TraceMode.OFF).getString(3, "text"));
+        });
+
+        assertEquals(List.of("abc", ""), payloads);
+    }
+
+    @Test
+    public void test_frames_split_across_chunks() throws Exception {
+        String[] texts = { "alpha", "b", "gamma ray", "", "delta", "epsilon" };
+        byte[] bytes = frames(FrameDecoder.Prefix.INT4, ByteOrder.LITTLE_ENDIAN, false, texts);
+
+        for (int chunk=1; chunk<=bytes.length; chunk++) {
+            FrameDecoder decoder = new FrameDecoder(FrameDecoder.Prefix.INT4, ByteOrder.LITTLE_ENDIAN, false, 1024, 4);
+            List<String> payloads = new ArrayList<String>();
+
+            for (int pos=0; pos<bytes.length; pos+=chunk) {
+                decoder.decode(bytes, pos, Math.min(chunk, bytes.length - pos), batch -> collect(batch, payloads));
+            }
+
+            assertEquals("chunk " + chunk, List.of(texts), payloads);
+            assertEquals(0, decoder.getPending());
+        }
+    }
+
+    @Test
+    public void test_stream() throws Exception {
+        byte[] bytes = frames(FrameDecoder.Prefix.UINT2, ByteOrder.BIG_ENDIAN, true, "x", "yy", "zzz");
+        FrameDecoder decoder = new FrameDecoder(FrameDecoder.Prefix.UINT2, ByteOrder.BIG_ENDIAN, true);
+        List<String> payloads = new ArrayList<String>();
+
+        assertEquals(3, decoder.decode(new ByteArrayInputStream(bytes), 4, batch -> collect(batch, payloads)));
+        assertEquals(List.of("x", "yy", "zzz"), payloads);
+    }
+
+    @Test(expected = EOFException.class)
+    public void test_stream_ends_mid_frame() throws Exception {
+        byte[] bytes = Utils.toBytes(0, 0, 0, 4, 'a', 'b');
+        FrameDecoder decoder = new FrameDecoder(FrameDecoder.Prefix.INT4, ByteOrder.BIG_ENDIAN, false);
+
+        decoder.decode(new ByteArrayInputStream(bytes), 16, batch -> fail());
+    }
+
+    @Test(expected = IOException.class)
+    public void test_bad_length() throws Exception {
+        byte[] bytes = Utils.toBytes(0, 0, 1, 0, 'a');
+        FrameDecoder decoder = new FrameDecoder(FrameDecoder.Prefix.INT4, ByteOrder.BIG_ENDIAN, false, 100, 8);
+
+        decoder.decode(bytes, 0, bytes.length, batch -> fail());
+    }
+
+    private static void collect(FrameDecoder.Batch batch, List<String> payloads) {
+        for (int ii=0; ii<batch.size(); ii++) {
+            payloads.add(batch.getBuffer().getString(batch.getOffset(ii), batch.getLength(ii), CHARSET));
+        }
+    }
+
+    private static byte[] frames(FrameDecoder.Prefix prefix, ByteOrder order, boolean inclusive, String... texts) {
+        BinaryWriter bw = new BinaryWriter(CHARSET, order);
+        for (String text : texts) {
+            int length = inclusive ? text.length() + prefix.getSize() : text.length();
+            if (prefix == FrameDecoder.Prefix.UINT2)
+                bw.putUInt2(length);
+            else
+                bw.putInt4(length);
+            bw.putString(text, text.length());
+        }
+        return bw.getBytes();
+    }
+}
@@ -0,0 +1,108 @@
+package org.bodhi.fbc;
+
+import java.io.StringWriter;
+import java.nio.CharBuffer;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HexDumpTest {
+
+    // Past 9999 the decimal column widens and past 0xffff the hex one does, as with String.format.
+
+    @Test
+    public void test_same_as_format() throws Exception {
+        byte[] bytes = new byte[70000];
+        new Random(7).nextBytes(bytes);
+        Trace trace = trace(bytes.length);
+
+        assertEquals(formatted(trace, bytes), Utils.toString(trace, bytes));
+
+        byte[] other = bytes.clone();
+        other[12345] ^= 1;
+        byte[] shorter = java.util.Arrays.copyOf(bytes, 69990);
+
+        assertEquals(formatted(trace, bytes, other), Utils.toString(trace, bytes, other));
+        assertEquals(formatted(trace, shorter, bytes), Utils.toString(trace, shorter, bytes));
+    }
+
+    @Test
+    public void test_pages_make_up_the_dump() throws Exception {
+        byte[] bytes = new byte[1000];
+        new Random(3).nextBytes(bytes);
+        Trace trace = trace(bytes.length);
+        HexDump dump = new HexDump(trace);
+        StringWriter out = new StringWriter();
+
+        int pages = 0;
+        while (dump.page(bytes, pages, 64, out)) {
+            pages++;
+        }
+
+        assertEquals(16, pages);
+        assertEquals(Utils.toString(trace, bytes), out.toString());
+    }
+
+    @Test
+    public void test_range_to_any_appendable() throws Exception {
+        Trace trace = new Trace();
+        trace.trace(5, "Long field name over twenty", "Comment");
+        CharBuffer out = CharBuffer.allocate(200);
+
+        new HexDump(trace).dump(Utils.toBytes(0, 1, 2, 3, 4, 0xff, 6), 4, 2, out);
+
+        assertEquals("   4 0x0004                      0x04 \n" +
+                     "   5 0x0005 Long field name over twenty 0xff Comment\n",
+                     out.flip().toString());
+    }
+
+    @Test
+    public void test_range_past_int_max() throws Exception {
+        byte[] bytes = Utils.toBytes(0, 1, 2, 3);
+        HexDump dump = new HexDump(new Trace());
+        StringBuilder out = new StringBuilder();
+
+        dump.dump(bytes, 2, Integer.MAX_VALUE, out);
+        assertEquals(2, out.toString().split("\n").length);
+
+        out.setLength(0);
+        dump.page(bytes, 1, Integer.MAX_VALUE, out);
+        assertEquals("", out.toString());
+        assertTrue(dump.page(bytes, 0, Integer.MAX_VALUE, out));
+        assertEquals(4, out.toString().split("\n").length);
+    }
+
+    private static Trace trace(int length) {
+        Trace trace = new Trace(length);
+        for (int ii=0; ii<length; ii+=7) {
+            trace.trace(ii, "F" + ii, FieldType.SINT4, 4, ii);
+        }
+        trace.appendComment(3, " appended");
+        trace.trace(10, null, (String) null);
+        return trace;
+    }
+
+    // The String.format rendering HexDump replaced.
+
+    private static String formatted(Trace trace, byte[] bytes) {
+        StringBuilder b = new StringBuilder();
+        for (int ii=0; ii<bytes.length; ii++) {
+            b.append(String.format("%4d 0x%04x %20s %s %s\n", ii, ii, trace.getField(ii, ""),
+                                   String.format("0x%02x", bytes[ii]), trace.getComment(ii, "")));
+        }
+        return b.toString();
+    }
+
+    private static String formatted(Trace trace, byte[] left, byte[] right) {
+        StringBuilder b = new StringBuilder();
+        b.append(String.format("%9s %20s %s %s\n", "Off", "Field", "Actual", "Expected"));
+        for (int ii=0; ii<Math.max(left.length, right.length); ii++) {
+            String l = (ii < left.length) ? String.format("0x%02x", left[ii]) : "----";
+            String r = (ii < right.length) ? String.format("0x%02x", right[ii]) : "----";
+            b.append(String.format("%4d 0x%04x %20s %4s %4s %c %s\n", ii, ii, trace.getField(ii, ""),
+                                   l, r, l.equals(r) ? ' ' : '*', trace.getComment(ii, "")));
+        }
+        return b.toString();
+    }
+}
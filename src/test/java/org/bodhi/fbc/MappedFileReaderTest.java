@@ -0,0 +1,94 @@
+package org.bodhi.fbc;
+
+import java.io.EOFException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class MappedFileReaderTest {
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test_read_across_windows() throws Exception {
+        BinaryWriter bw = new BinaryWriter(CHARSET);
+        for (int ii=0; ii<10; ii++) {
+            bw.putInt2(ii);
+            bw.putInt4(100 + ii);
+            bw.putInt8(1000L + ii);
+            bw.putString("R" + ii, 5, "name");
+        }
+        Path path = write(bw.getBytes());
+
+        // 16 byte windows force most records to straddle a window boundary
+
+        try (MappedFileReader reader = new MappedFileReader(path, CHARSET, 16)) {
+            assertEquals(190, reader.size());
+
+            for (int ii=0; ii<10; ii++) {
+                assertEquals(ii, reader.getInt2());
+                assertEquals(100 + ii, reader.getInt4());
+                assertEquals(1000L + ii, reader.getInt8());
+                assertEquals("R" + ii, reader.getString(5));
+            }
+            assertEquals(0, reader.available());
+
+            reader.moveToPosition(19);
+            assertEquals(1, reader.getInt2());
+        }
+    }
+
+    @Test
+    public void test_record_reader() throws Exception {
+        Path path = write(Utils.toBytes(0, 0, 0, 7, 'a', 'b', 'c', 0, 9));
+
+        try (MappedFileReader reader = new MappedFileReader(path, CHARSET)) {
+            reader.skip(4);
+            BinaryReader record = reader.record(4, TraceMode.FULL);
+
+            assertEquals("abc", record.getString(4, "text"));
+            assertEquals("text", record.getTrace().getField(0));
+            assertEquals(8, reader.getPosition());
+            assertEquals(9, reader.getInt1());
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void test_read_past_end() throws Exception {
+        Path path = write(Utils.toBytes(1, 2, 3));
+
+        try (MappedFileReader reader = new MappedFileReader(path, CHARSET)) {
+            reader.getInt4();
+        }
+    }
+
+    @Test
+    public void test_moves_stay_in_file() throws Exception {
+        Path path = write(Utils.toBytes(1, 2, 3));
+
+        try (MappedFileReader reader = new MappedFileReader(path, CHARSET)) {
+            try { reader.skip(4); fail(); } catch (IndexOutOfBoundsException expected) { }
+            try { reader.moveToPosition(4); fail(); } catch (IndexOutOfBoundsException expected) { }
+            try { reader.moveToPosition(-1); fail(); } catch (IndexOutOfBoundsException expected) { }
+            assertEquals(0, reader.getPosition());
+
+            reader.skip(3);
+            assertEquals(0, reader.available());
+            reader.moveToPosition(2);
+            assertEquals(3, reader.getInt1());
+        }
+    }
+
+    private Path write(byte[] bytes) throws Exception {
+        Path path = folder.newFile().toPath();
+        Files.write(path, bytes);
+        return path;
+    }
+}
@@ -0,0 +1,95 @@
+package org.bodhi.fbc;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RecordSpliteratorTest {
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+    private static final int COUNT = 20000;
+
+    @Test
+    public void test_fixed_ordered() throws Exception {
+        byte[] bytes = records(ByteOrder.BIG_ENDIAN, false);
+
+        List<Integer> ids = RecordSpliterator.fixed(bytes, 12, ByteOrder.BIG_ENDIAN, CHARSET, TraceMode.OFF,
+                                                    reader -> reader.getInt4("id"), true)
+                                             .collect(Collectors.toList());
+
+        assertEquals(expected(), ids);
+    }
+
+    @Test
+    public void test_fixed_unordered_uses_many_threads() throws Exception {
+        byte[] bytes = records(ByteOrder.LITTLE_ENDIAN, false);
+        ByteBuffer mapped = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip().asReadOnlyBuffer();
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        Set<Integer> ids = new ForkJoinPool(4).submit(() ->
+                RecordSpliterator.fixed(mapped, 12, ByteOrder.LITTLE_ENDIAN, CHARSET, TraceMode.OFF, reader -> {
+                    threads.add(Thread.currentThread());
+                    int id = reader.getInt4("id");
+                    assertEquals(2L * id, reader.getInt8("value"));
+                    return id;
+                }, false).collect(Collectors.toSet())).get();
+
+        assertEquals(Set.copyOf(expected()), ids);
+        assertTrue(threads.size() > 1);
+    }
+
+    @Test
+    public void test_framed() throws Exception {
+        byte[] bytes = records(ByteOrder.BIG_ENDIAN, true);
+
+        List<Integer> ids = RecordSpliterator.framed(bytes, FrameDecoder.Prefix.UINT2, ByteOrder.BIG_ENDIAN, false,
+                                                     CHARSET, TraceMode.FULL, reader -> reader.getInt4("id"), true)
+                                             .collect(Collectors.toList());
+
+        assertEquals(expected(), ids);
+    }
+
+    @Test
+    public void test_traces_are_relative_to_the_record() throws Exception {
+        byte[] bytes = records(ByteOrder.BIG_ENDIAN, false);
+        ByteBuffer mapped = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+
+        RecordSpliterator.Decoder<Integer> decoder = reader -> {
+            int id = reader.getInt4("id");
+            reader.getInt8("value");
+            assertEquals(0, reader.getPosition("id"));
+            assertEquals(4, reader.getPosition("value"));
+            return id;
+        };
+
+        assertEquals(expected(), RecordSpliterator.fixed(bytes, 12, ByteOrder.BIG_ENDIAN, CHARSET, TraceMode.FULL,
+                                                         decoder, true).collect(Collectors.toList()));
+        assertEquals(expected(), RecordSpliterator.fixed(mapped, 12, ByteOrder.BIG_ENDIAN, CHARSET, TraceMode.FULL,
+                                                         decoder, true).collect(Collectors.toList()));
+    }
+
+    private static List<Integer> expected() {
+        return IntStream.range(0, COUNT).boxed().collect(Collectors.toList());
+    }
+
+    // Records are an Int4 id and an Int8 value of twice the id, optionally behind a UInt2 length.
+
+    private static byte[] records(ByteOrder order, boolean prefixed) {
+        BinaryWriter bw = new BinaryWriter(CHARSET, order);
+        for (int ii=0; ii<COUNT; ii++) {
+            if (prefixed)
+                bw.putUInt2(12);
+            bw.putInt4(ii);
+            bw.putInt8(2L * ii);
+        }
+        return bw.getBytes();
+    }
+}
@@ -0,0 +1,119 @@
+package org.bodhi.fbc;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.charset.Charset;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StreamingBinaryReaderTest {
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+    @Test
+    public void test_stream_longer_than_window() throws Exception {
+        byte[] bytes = records(1000);
+
+        // a source that hands out a few bytes at a time, like a socket
+
+        InputStream trickle = new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 3));
+            }
+        };
+
+        try (StreamingBinaryReader reader = new StreamingBinaryReader(trickle, CHARSET, TraceMode.OFF, 32)) {
+            check(reader, 1000);
+        }
+    }
+
+    @Test
+    public void test_channel() throws Exception {
+        byte[] bytes = records(50);
+
+        try (StreamingBinaryReader reader = new StreamingBinaryReader(
+                Channels.newChannel(new ByteArrayInputStream(bytes)), CHARSET, TraceMode.OFF, 20)) {
+            check(reader, 50);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_non_blocking_channel_rejected() throws Exception {
+        Pipe pipe = Pipe.open();
+        try {
+            pipe.source().configureBlocking(false);
+            new StreamingBinaryReader(pipe.source(), CHARSET);
+        }
+        finally {
+            pipe.source().close();
+            pipe.sink().close();
+        }
+    }
+
+    @Test
+    public void test_labels_are_relative_to_record() throws Exception {
+        byte[] bytes = records(2);
+        StreamingBinaryReader reader = new StreamingBinaryReader(new ByteArrayInputStream(bytes), CHARSET);
+
+        reader.skip(19);
+        reader.beginRecord();
+        reader.getInt2("id");
+        reader.getInt4("count");
+        reader.getInt8("total");
+        reader.getString(5, "name");
+
+        assertEquals(0, reader.getPosition("id"));
+        assertEquals(14, reader.getPosition("name"));
+        assertEquals(38, reader.getPosition());
+    }
+
+    @Test
+    public void test_record_reader_and_large_bytes() throws Exception {
+        byte[] bytes = records(10);
+        StreamingBinaryReader reader = new StreamingBinaryReader(new ByteArrayInputStream(bytes), CHARSET, TraceMode.OFF, 24);
+
+        BinaryReader record = reader.record(19, TraceMode.FULL);
+        assertEquals(0, record.getInt2("id"));
+        assertEquals("id", record.getTrace().getField(0));
+
+        byte[] rest = new byte[9 * 19];
+        reader.getBytes(rest, 0, rest.length);
+        assertEquals(108, rest[7 * 19 + 5]);  // low byte of record 8's count
+        assertFalse(reader.hasRemaining());
+    }
+
+    @Test(expected = EOFException.class)
+    public void test_end_of_stream() throws Exception {
+        StreamingBinaryReader reader = new StreamingBinaryReader(new ByteArrayInputStream(Utils.toBytes(0, 1, 2)), CHARSET);
+
+        assertEquals(1, reader.getInt2());
+        reader.getInt2();
+    }
+
+    private static byte[] records(int count) {
+        BinaryWriter bw = new BinaryWriter(CHARSET, TraceMode.OFF);
+        for (int ii=0; ii<count; ii++) {
+            bw.putInt2(ii);
+            bw.putInt4(100 + ii);
+            bw.putInt8(1000L + ii);
+            bw.putString("R" + ii, 5);
+        }
+        return bw.getBytes();
+    }
+
+    private static void check(StreamingBinaryReader reader, int count) throws Exception {
+        for (int ii=0; ii<count; ii++) {
+            assertEquals(ii, reader.getInt2());
+            assertEquals(100 + ii, reader.getInt4());
+            assertEquals(1000L + ii, reader.getInt8());
+            assertEquals("R" + ii, reader.getString(5));
+        }
+        assertFalse(reader.hasRemaining());
+        assertEquals(19L * count, reader.getPosition());
+    }
+}
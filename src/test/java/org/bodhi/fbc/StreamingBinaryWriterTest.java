@@ -0,0 +1,94 @@
+package org.bodhi.fbc;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class StreamingBinaryWriterTest {
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test_same_bytes_as_binary_writer() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryWriter expected = new BinaryWriter(CHARSET, TraceMode.OFF);
+
+        try (StreamingBinaryWriter writer = new StreamingBinaryWriter(out, CHARSET, TraceMode.OFF, 32)) {
+            for (int ii=0; ii<500; ii++) {
+                writer.putInt2(ii);
+                writer.putInt4(100 + ii);
+                writer.putInt8(1000L + ii);
+                writer.putString("R" + ii, 5);
+
+                expected.putInt2(ii);
+                expected.putInt4(100 + ii);
+                expected.putInt8(1000L + ii);
+                expected.putString("R" + ii, 5);
+            }
+            assertEquals(19 * 500, writer.getPosition());
+        }
+
+        assertArrayEquals(expected.getBytes(), out.toByteArray());
+    }
+
+    @Test
+    public void test_replace_length_prefix() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamingBinaryWriter writer = new StreamingBinaryWriter(Channels.newChannel(out), CHARSET, TraceMode.LABELS_ONLY, 16);
+
+        for (int ii=0; ii<3; ii++) {
+            writer.beginRecord();
+            writer.putInt4(0, "length");
+            writer.label("start");
+            writer.putString("abcdef".substring(0, ii + 1), ii + 1, "body");
+            writer.label("end");
+            writer.replaceInt4("length", writer.diff("end", "start"));
+        }
+        writer.flush();
+
+        assertArrayEquals(Utils.toBytes(0, 0, 0, 1, 'a',
+                                        0, 0, 0, 2, 'a', 'b',
+                                        0, 0, 0, 3, 'a', 'b', 'c'), out.toByteArray());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void test_replace_after_flush() throws Exception {
+        StreamingBinaryWriter writer = new StreamingBinaryWriter(new ByteArrayOutputStream(), CHARSET, TraceMode.LABELS_ONLY, 16);
+
+        writer.putInt4(0, "length");
+        writer.putInt8(1);
+        writer.putInt8(2);
+        writer.replaceInt4("length", 16);
+    }
+
+    @Test
+    public void test_gathering_write_of_large_bytes() throws Exception {
+        Path path = folder.newFile().toPath();
+        byte[] payload = new byte[100];
+        payload[99] = 7;
+
+        try (StreamingBinaryWriter writer = new StreamingBinaryWriter(
+                FileChannel.open(path, StandardOpenOption.WRITE), CHARSET, TraceMode.OFF, 16)) {
+            writer.putInt2(1);
+            writer.putBytes(payload, 0, payload.length);
+            writer.putInt2(2);
+        }
+
+        byte[] written = Files.readAllBytes(path);
+        assertEquals(104, written.length);
+        assertEquals(1, written[1]);
+        assertEquals(7, written[101]);
+        assertEquals(2, written[103]);
+    }
+}
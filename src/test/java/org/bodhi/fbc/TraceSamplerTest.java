@@ -0,0 +1,178 @@
+package org.bodhi.fbc;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TraceSamplerTest {
+    private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+    private static final RecordSpliterator.Decoder<Integer> DECODER =
+        reader -> reader.getInt1("Type") + reader.getInt4("Value");
+
+    @Test
+    public void test_one_in_n() throws Exception {
+        List<TraceSampler.Sample> samples = new ArrayList<>();
+        TraceSampler sampler = new TraceSampler(3, samples::add);
+        BinaryReader reader = new BinaryReader(new byte[0], LATIN_1, TraceMode.OFF);
+
+        for (int ii=0; ii<7; ii++) {
+            assertEquals(ii + 1, (int) sampler.decode(reader, Utils.toBytes(1, 0, 0, 0, ii), DECODER));
+            assertEquals(TraceMode.OFF, reader.getTraceMode());
+        }
+
+        assertEquals(2, samples.size());
+        assertEquals(TraceSampler.Reason.SAMPLED, samples.get(0).getReason());
+        assertEquals(2, samples.get(0).getBytes()[4]);
+        assertEquals(5, samples.get(1).getBytes()[4]);
+        assertEquals("Value", samples.get(1).getTrace().getField(1));
+        assertEquals("// SInt4: 5", samples.get(1).getTrace().getComment(1));
+        assertNull(samples.get(1).getError());
+    }
+
+    @Test
+    public void test_match_within_array() throws Exception {
+        List<TraceSampler.Sample> samples = new ArrayList<>();
+        TraceSampler sampler = new TraceSampler(0, (bytes, offset, length) -> bytes[offset] == 9, false, samples::add);
+        BinaryReader reader = new BinaryReader(new byte[0], LATIN_1, TraceMode.LABELS_ONLY);
+        byte[] bytes = Utils.toBytes(1, 0, 0, 0, 1, 9, 0, 0, 0, 2);
+
+        sampler.decode(reader, bytes, 0, 5, DECODER);
+        sampler.decode(reader, bytes, 5, 5, DECODER);
+
+        assertEquals(1, samples.size());
+        TraceSampler.Sample sample = samples.get(0);
+        assertEquals(TraceSampler.Reason.MATCHED, sample.getReason());
+        assertEquals(5, sample.getLength());
+        assertArrayEquals(Utils.toBytes(9, 0, 0, 0, 2), sample.getBytes());
+        assertEquals("Type", sample.getTrace().getField(0));
+        assertTrue(sample.toString().startsWith("MATCHED\n   0 0x0000                 Type 0x09 // SInt1: 9\n"));
+        assertEquals(TraceMode.LABELS_ONLY, reader.getTraceMode());
+    }
+
+    @Test
+    public void test_failure_is_traced() throws Exception {
+        List<TraceSampler.Sample> samples = new ArrayList<>();
+        TraceSampler sampler = new TraceSampler(0, null, true, samples::add);
+        BinaryReader reader = new BinaryReader(new byte[0], LATIN_1, TraceMode.OFF);
+
+        try {
+            sampler.decode(reader, Utils.toBytes(7, 0, 0), DECODER);
+        }
+        catch (IOException | RuntimeException | AssertionError e) {
+            assertEquals(1, samples.size());
+            assertSame(e, samples.get(0).getError());
+        }
+
+        assertEquals(1, samples.size());
+        TraceSampler.Sample sample = samples.get(0);
+        assertEquals(TraceSampler.Reason.FAILED, sample.getReason());
+        assertEquals("// SInt1: 7", sample.getTrace().getComment(0));
+        assertEquals(TraceMode.OFF, reader.getTraceMode());
+    }
+
+    @Test
+    public void test_encode() throws Exception {
+        List<TraceSampler.Sample> samples = new ArrayList<>();
+        TraceSampler sampler = new TraceSampler(2, samples::add);
+        BinaryWriter writer = new BinaryWriter(LATIN_1, TraceMode.OFF);
+
+        for (int ii=0; ii<4; ii++) {
+            int n = ii;
+            sampler.encode(writer, w -> w.putInt4(n, "Value"));
+            assertEquals(4, writer.getLength());
+        }
+
+        assertEquals(2, samples.size());
+        assertEquals("// SInt4: 3", samples.get(1).getTrace().getComment(0));
+        assertEquals(4, samples.get(1).getLength());
+        assertEquals(TraceMode.OFF, writer.getTraceMode());
+    }
+
+    @Test
+    public void test_async_sink_never_blocks() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<TraceSampler.Sample> delivered = new ArrayList<>();
+
+        AsyncTraceSink sink = new AsyncTraceSink(sample -> {
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (delivered) {
+                delivered.add(sample);
+            }
+        }, 1);
+
+        TraceSampler sampler = new TraceSampler(1, sink);
+        BinaryReader reader = new BinaryReader(new byte[0], LATIN_1, TraceMode.OFF);
+        for (int ii=0; ii<3; ii++) {
+            sampler.decode(reader, Utils.toBytes(1, 0, 0, 0, ii), DECODER);
+        }
+
+        assertTrue(sink.getDropped() >= 1);
+        release.countDown();
+        sink.close();
+
+        synchronized (delivered) {
+            assertEquals(3, delivered.size() + sink.getDropped());
+        }
+    }
+
+    @Test
+    public void test_async_sink_close_does_not_interrupt() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        List<Boolean> interrupted = new ArrayList<>();
+
+        AsyncTraceSink sink = new AsyncTraceSink(sample -> {
+            entered.countDown();
+            try {
+                Thread.sleep(50);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (interrupted) {
+                interrupted.add(Thread.currentThread().isInterrupted());
+            }
+        }, 4);
+
+        TraceSampler sampler = new TraceSampler(1, sink);
+        BinaryReader reader = new BinaryReader(new byte[0], LATIN_1, TraceMode.OFF);
+        sampler.decode(reader, Utils.toBytes(1, 0, 0, 0, 1), DECODER);
+        sampler.decode(reader, Utils.toBytes(1, 0, 0, 0, 2), DECODER);
+        entered.await();
+        sink.close();
+        sampler.decode(reader, Utils.toBytes(1, 0, 0, 0, 3), DECODER);
+
+        synchronized (interrupted) {
+            assertEquals(Arrays.asList(false, false), interrupted);
+        }
+        assertEquals(1, sink.getDropped());
+    }
+
+    @Test
+    public void test_async_sink_survives_errors() throws Exception {
+        AsyncTraceSink sink = new AsyncTraceSink(sample -> {
+            throw new OutOfMemoryError("sink");
+        }, 1);
+
+        TraceSampler sampler = new TraceSampler(1, null, false, sink);
+        BinaryReader reader = new BinaryReader(new byte[0], LATIN_1, TraceMode.OFF);
+        for (int ii=0; ii<20; ii++) {
+            sampler.decode(reader, Utils.toBytes(1, 0, 0, 0, ii), DECODER);
+            Thread.sleep(1);
+        }
+        sink.close();
+
+        assertTrue(sink.getFailed() > 0);
+        assertEquals(20, sink.getFailed() + sink.getDropped());
+    }
+}
@@ -1,5 +1,6 @@
 package org.bodhi.fbc;
 
+import java.util.List;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -52,4 +53,123 @@ public class TraceTest {
         assertTrue(trace.hasComment(4));
         assertEquals("Comment, more", trace.getComment(4, "x"));
     }
+
+    @Test
+    public void test_typed_field_comments() {
+        Trace trace = new Trace();
+
+        trace.trace(0, "A", FieldType.SINT4, 4, 25);
+        trace.trace(4, "B", FieldType.STRING, 10, "Two");
+        trace.trace(14, "C", FieldType.BYTES, 3);
+        trace.trace(17, "D", FieldType.BOOL, 1, 1);
+
+        assertEquals("// SInt4: 25", trace.getComment(0));
+        assertEquals("// String[10]: 'Two'", trace.getComment(4));
+        assertEquals("// bytes[3]", trace.getComment(14));
+        assertEquals("// bool: true", trace.getComment(17));
+        assertEquals("B", trace.getField(4));
+    }
+
+    @Test
+    public void test_value_set_after_trace() {
+        Trace trace = new Trace();
+
+        trace.trace(0, "A", FieldType.UINT2, 2);
+        assertEquals("// UInt2", trace.getComment(0));
+
+        trace.setValue(0, 65535);
+        trace.appendComment(0, " (Replaced)");
+        assertEquals("// UInt2: 65535 (Replaced)", trace.getComment(0));
+    }
+
+    @Test
+    public void test_copy_is_independent() {
+        Trace trace = new Trace();
+        trace.trace(0, "A", FieldType.SINT4, 4, 1);
+
+        Trace copy = trace.copy();
+        trace.appendComment(0, "!");
+
+        assertEquals("// SInt4: 1", copy.getComment(0));
+        assertEquals("// SInt4: 1!", trace.getComment(0));
+    }
+
+    @Test
+    public void test_copy_on_write_both_ways() {
+        Trace trace = new Trace(4);
+        trace.trace(0, "A", "First");
+
+        Trace copy = trace.copy();
+        copy.trace(1, "B", "Second");
+        trace.label(9, "C");
+
+        assertFalse(trace.hasField(1));
+        assertTrue(copy.hasField(1));
+        assertEquals(9, trace.getPosition("C"));
+        assertEquals("First", copy.getComment(0));
+    }
+
+    @Test
+    public void test_many_fields_past_capacity() {
+        Trace trace = new Trace(4);
+
+        for (int ii=0; ii<1000; ii++) {
+            trace.trace(ii * 3, "F" + ii, FieldType.SINT1, 1, ii);
+        }
+        trace.trace(3, "G", "Replaced");
+
+        assertEquals(2997, trace.getPosition("F999"));
+        assertEquals("// SInt1: 998", trace.getComment(2994));
+        assertEquals("G", trace.getField(3));
+        assertEquals("Replaced", trace.getComment(3));
+        assertEquals(3, trace.getPosition("F1"));
+        assertFalse(trace.hasField(4));
+    }
+
+    // The capacity only hints at the table size, a huge one must not allocate up front.
+
+    @Test
+    public void test_capacity_is_a_hint() {
+        Trace trace = new Trace(Integer.MAX_VALUE);
+        trace.trace(100000, "F", FieldType.SINT4, 4, 1);
+
+        assertEquals(100000, trace.getPosition("F"));
+        assertEquals("// SInt4: 1", trace.getComment(100000));
+    }
+
+    @Test
+    public void test_clear() {
+        Trace trace = new Trace(8);
+        trace.trace(2, "A", FieldType.SINT2, 2, 7);
+        Trace copy = trace.copy();
+
+        trace.clear();
+        assertFalse(trace.hasComment(2));
+        assertEquals("// SInt2: 7", copy.getComment(2));
+
+        trace.trace(4, "B", "Second");
+        trace.clear();
+        assertFalse(trace.hasField(4));
+
+        trace.trace(2, "C", "Third");
+        assertEquals(2, trace.getPosition("C"));
+        assertEquals("Third", trace.getComment(2));
+    }
+
+    @Test
+    public void test_getFields() {
+        Trace trace = new Trace();
+        trace.trace(8, "B", FieldType.SINT4, 4, 25);
+        trace.trace(0, "A", FieldType.STRING, -1, "abc");
+        trace.appendComment(4, "not a field");
+
+        List<Trace.Field> fields = trace.getFields();
+
+        assertEquals(2, fields.size());
+        assertEquals("A", fields.get(0).getName());
+        assertEquals("'abc'", fields.get(0).getValueString());
+        assertEquals(8, fields.get(1).getPosition());
+        assertEquals(4, fields.get(1).getWidth());
+        assertEquals(25, fields.get(1).getValue());
+    }
 }
@@ -17,6 +17,26 @@ public class UtilsTest {
     }
 
 
+    // A Binary from outside the library gets mismatch from the interface, over getBytes().
+
+    @Test
+    public void test_default_mismatch() {
+        Binary binary = new Binary() {
+            public byte[] getBytes() {
+                return toBytes(1, 2, 3);
+            }
+
+            public Trace getTrace() {
+                return new Trace();
+            }
+        };
+
+        assertEquals(-1, binary.mismatch(toBytes(1, 2, 3), 0));
+        assertEquals(2, binary.mismatch(toBytes(1, 2, 4), 0));
+        assertEquals(3, binary.mismatch(toBytes(1, 2, 3, 4), 1));
+        assertEquals(1, binary.mismatch(toBytes(1), 0));
+    }
+
     @Test
     public void test_toString_with_one_byte_array() {
         byte[] bytes = Utils.toBytes(1, 2, 3);
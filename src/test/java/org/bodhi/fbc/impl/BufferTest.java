@@ -1,5 +1,7 @@
 package org.bodhi.fbc.impl;
 
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -166,10 +168,167 @@ public class BufferTest {
         b.skip(100);
     }
 
+    @Test
+    public void test_growth_doubles_capacity() {
+        Buffer b = new Buffer(16);
+
+        b.putInt8(1);
+        b.putInt8(2);
+        assertEquals(16, b.getCapacity());
+
+        b.putInt1(3);
+        assertEquals(32, b.getCapacity());
+        assertEquals(32, b.getLimit());
+
+        b.skip(100);
+        assertEquals(117, b.getCapacity());
+        assertEquals(117, b.getLimit());
+    }
+
+    @Test
+    public void test_growth_stops_at_max_capacity() {
+        Buffer b = new Buffer(16, 24);
+
+        b.skip(20);
+        assertEquals(24, b.getCapacity());
+
+        try {
+            b.putInt8(1);
+            fail();
+        }
+        catch (IndexOutOfBoundsException e) {
+            assertEquals(20, b.getPosition());
+        }
+    }
+
+    @Test
+    public void test_max_capacity_counts_from_offset() {
+        Buffer b = Buffer.forWriting(new byte[16], 8, 8, ByteOrder.BIG_ENDIAN, 24);
+
+        b.skip(20);
+        b.putInt4(1);
+        assertEquals(24, b.getPosition());
+
+        try {
+            b.putInt1(1);
+            fail();
+        }
+        catch (IndexOutOfBoundsException e) {
+            assertEquals(24, b.getPosition());
+        }
+    }
+
+    @Test
+    public void test_for_writing_uses_supplied_array() {
+        byte[] backing = new byte[4];
+        Buffer b = Buffer.forWriting(backing, 64);
+
+        b.putInt2(0x0102);
+        assertArrayEquals(toBytes(1, 2, 0, 0), backing);
+
+        b.putInt4(0x03040506);
+        assertEquals(8, b.getCapacity());
+
+        byte[] dst = new byte[8];
+        assertEquals(6, b.copyBytes(dst, 1));
+        assertArrayEquals(toBytes(0, 1, 2, 3, 4, 5, 6, 0), dst);
+    }
+
+    @Test
+    public void test_byte_order() {
+        Buffer buffer = new Buffer(toBytes(1, 2, 3, 4, 1, 2, 3, 4), ByteOrder.LITTLE_ENDIAN);
+
+        assertEquals(ByteOrder.LITTLE_ENDIAN, buffer.getByteOrder());
+        assertEquals(0x04030201, buffer.getInt4());
+
+        buffer.setByteOrder(ByteOrder.BIG_ENDIAN);
+        assertEquals(0x01020304, buffer.getInt4());
+    }
+
+    @Test
+    public void test_absolute_reads() {
+        Buffer buffer = new Buffer(toBytes(0, 0, 0, 7, 0, 0, 0, 0, 0, 0, 0, 9, 'a', 'b', ' ', ' '));
+
+        assertEquals(7, buffer.getInt4(0));
+        assertEquals(0x0000000700000000L, buffer.getInt8(0));
+        assertEquals(9, buffer.getInt8(4));
+        assertEquals("ab", buffer.getString(12, 4, StandardCharsets.ISO_8859_1));
+        assertEquals(0, buffer.getPosition());
+    }
+
     private static void dump(byte[] bytes) {
         for (byte b : bytes)
             System.out.print(b + ", ");
 
         System.out.println();
     }
+
+    @Test
+    public void test_reset() {
+        Buffer buffer = new Buffer(toBytes(1, 2, 3, 4));
+        buffer.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        buffer.getInt2();
+
+        buffer.reset(toBytes(9, 8, 7, 6, 5, 4), 2, 3);
+        assertEquals(ByteOrder.BIG_ENDIAN, buffer.getByteOrder());
+        assertEquals(0, buffer.getPosition());
+        assertEquals(3, buffer.getLimit());
+        assertEquals(0x0706, buffer.getInt2());
+        assertEquals(2, buffer.getPosition());
+        assertArrayEquals(toBytes(7, 6), buffer.copyBytes());
+        assertEquals(5, buffer.getInt1(2));
+
+        buffer.clear();
+        assertEquals(0, buffer.getPosition());
+        assertEquals(7, buffer.getInt1());
+    }
+
+    @Test
+    public void test_absolute_reads_stay_in_message() {
+        Buffer buffer = new Buffer(toBytes(1, 2, 3, 4, 5, 6, 7, 8), 0, 4);
+        assertEquals(0x01020304, buffer.getInt4(0));
+
+        try { buffer.getInt4(4); fail(); } catch (IndexOutOfBoundsException expected) { }
+        try { buffer.getInt2(3); fail(); } catch (IndexOutOfBoundsException expected) { }
+        try { buffer.getInt1(-1); fail(); } catch (IndexOutOfBoundsException expected) { }
+        try { buffer.getBytes(2, new byte[3], 0, 3); fail(); } catch (IndexOutOfBoundsException expected) { }
+
+        Buffer second = new Buffer(toBytes(1, 2, 3, 4, 5, 6, 7, 8), 4, 4);
+        assertEquals(0x0506, second.getInt2(0));
+        try { second.getInt8(0); fail(); } catch (IndexOutOfBoundsException expected) { }
+    }
+
+    @Test
+    public void test_bulk_arrays() {
+        for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+            Buffer buffer = new Buffer(4, Buffer.MAX_CAPACITY, order);
+            buffer.putInt2s(new short[] { 1, -2 }, 0, 2);
+            buffer.putInt4s(new int[] { 9, 3, -4, 9 }, 1, 2);
+            buffer.putInt8s(new long[] { Long.MIN_VALUE }, 0, 1);
+
+            Buffer reader = new Buffer(buffer.copyBytes(), order);
+            short[] shorts = new short[2];
+            int[] ints = new int[3];
+            long[] longs = new long[1];
+
+            reader.getInt2s(shorts, 0, 2);
+            reader.getInt4s(ints, 1, 2);
+            reader.getInt8s(longs, 0, 1);
+
+            assertArrayEquals(new short[] { 1, -2 }, shorts);
+            assertArrayEquals(new int[] { 0, 3, -4 }, ints);
+            assertArrayEquals(new long[] { Long.MIN_VALUE }, longs);
+            assertEquals(0, reader.available());
+        }
+
+        Buffer little = new Buffer(4, Buffer.MAX_CAPACITY, ByteOrder.LITTLE_ENDIAN);
+        little.putInt4s(new int[] { 1, 0x0a0b0c0d }, 0, 2);
+        assertArrayEquals(toBytes(1, 0, 0, 0, 0x0d, 0x0c, 0x0b, 0x0a), little.copyBytes());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void test_bulk_read_past_limit() {
+        Buffer buffer = new Buffer(toBytes(0, 0, 0, 1, 0, 0, 0));
+        buffer.getInt4s(new int[2], 0, 2);
+    }
 }
@@ -0,0 +1,78 @@
+package org.bodhi.fbc.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.bodhi.fbc.Utils.*;
+
+public class BytesTest {
+
+    @Test
+    public void test_put_string_pads_and_truncates() {
+        Buffer buffer = new Buffer(4);
+
+        buffer.putString("ab", 4, StandardCharsets.ISO_8859_1, (byte) ' ');
+        buffer.putString("abcdef", 3, StandardCharsets.ISO_8859_1, (byte) 0);
+        buffer.putString("a", 3, StandardCharsets.US_ASCII, (byte) 0);
+
+        assertArrayEquals(toBytes('a', 'b', ' ', ' ', 'a', 'b', 'c', 'a', 0, 0), buffer.copyBytes());
+    }
+
+    @Test
+    public void test_unmappable_becomes_question_mark() {
+        Buffer buffer = new Buffer(4);
+
+        buffer.putString("é€", 2, StandardCharsets.ISO_8859_1, (byte) 0);
+        buffer.putString("é", 1, StandardCharsets.US_ASCII, (byte) 0);
+
+        assertArrayEquals(toBytes(0xe9, '?', '?'), buffer.copyBytes());
+    }
+
+    @Test
+    public void test_utf8_truncates_on_character_boundary() {
+        Buffer buffer = new Buffer(4);
+
+        // each e-acute is two bytes, the third does not fit in five
+
+        buffer.putString("ééé", 5, StandardCharsets.UTF_8, (byte) 0);
+
+        assertArrayEquals(toBytes(0xc3, 0xa9, 0xc3, 0xa9, 0), buffer.copyBytes());
+    }
+
+    @Test
+    public void test_direct_buffer() {
+        ByteBuffer direct = ByteBuffer.allocateDirect(8);
+        NioBuffer buffer = new NioBuffer(direct);
+
+        buffer.putString("ab", 3, StandardCharsets.ISO_8859_1, (byte) ' ');
+        buffer.putString("é", 3, StandardCharsets.UTF_8, (byte) 0);
+
+        assertArrayEquals(toBytes('a', 'b', ' ', 0xc3, 0xa9, 0), buffer.copyBytes());
+
+        buffer.setPosition(0);
+        assertEquals("ab", buffer.getString(3, StandardCharsets.ISO_8859_1));
+        assertEquals("é", buffer.getString(3, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void test_get_string_trims_spaces_and_nuls() {
+        Buffer buffer = new Buffer(toBytes(' ', 'a', 'b', 0, 0, 'c', ' ', '\t'));
+
+        assertEquals("ab", buffer.getString(5, StandardCharsets.ISO_8859_1));
+        assertEquals("c", buffer.getString(3, StandardCharsets.US_ASCII));
+        assertEquals("", buffer.getString(0, 0, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void test_decode_direct_in_place() {
+        ByteBuffer direct = ByteBuffer.allocateDirect(8);
+        direct.put(toBytes(9, ' ', 'a', 'b', 0, 0, 'c', ' '));
+
+        assertEquals("ab", Bytes.decode(direct, 1, 5, StandardCharsets.ISO_8859_1));
+        assertEquals("c", Bytes.decode(direct, 4, 4, StandardCharsets.UTF_8));
+        assertEquals("", Bytes.decode(direct, 4, 2, StandardCharsets.US_ASCII));
+        assertEquals(8, direct.position());
+    }
+}
@@ -0,0 +1,126 @@
+package org.bodhi.fbc.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.bodhi.fbc.Utils.*;
+
+public class NioBufferTest {
+    private static final byte xFF = (byte) 0xff;
+
+    @Test
+    public void test_read_from_position() {
+        ByteBuffer bb = ByteBuffer.wrap(toBytes(9, 9, 1, 2, 3, 4, 5, 6, 7, 8));
+        bb.position(2);
+
+        NioBuffer buffer = new NioBuffer(bb);
+        assertEquals(8, buffer.getLimit());
+        assertEquals(0x0102, buffer.getInt2());
+        assertEquals(0x03040506, buffer.getInt4());
+        assertEquals(0x0708, buffer.getUInt2(6));
+        assertEquals(6, buffer.getPosition());
+    }
+
+    @Test
+    public void test_read_direct_little_endian() {
+        ByteBuffer bb = ByteBuffer.allocateDirect(16).order(ByteOrder.LITTLE_ENDIAN);
+        bb.putInt(0x01020304).putLong(-2L).putShort((short) -1).flip();
+
+        NioBuffer buffer = new NioBuffer(bb);
+        assertEquals(ByteOrder.LITTLE_ENDIAN, buffer.getByteOrder());
+        assertEquals(0x01020304, buffer.getInt4());
+        assertEquals(-2L, buffer.getInt8());
+        assertEquals(0xffff, buffer.getUInt2());
+        assertEquals(0, buffer.available());
+    }
+
+    @Test
+    public void test_write_and_copy() {
+        NioBuffer buffer = new NioBuffer(ByteBuffer.allocateDirect(8));
+
+        buffer.putInt2(0x0102);
+        buffer.putInt1(xFF);
+        buffer.putUtfChar('A');
+        buffer.putInt4(0, 0x05060708);
+
+        assertArrayEquals(toBytes(5, 6, 7, 8, 65), buffer.copyBytes());
+        assertEquals("0x08", buffer.hex(3));
+        assertEquals("----", buffer.hex(5));
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void test_read_only() {
+        NioBuffer buffer = new NioBuffer(ByteBuffer.wrap(toBytes(1, 2, 3, 4)).asReadOnlyBuffer());
+
+        assertTrue(buffer.isReadOnly());
+        assertEquals(0x01020304, buffer.getInt4());
+        buffer.putInt4(0, 1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void test_no_growth() {
+        NioBuffer buffer = new NioBuffer(ByteBuffer.allocate(4));
+        buffer.putInt4(1);
+        buffer.putInt1(1);
+    }
+
+    @Test
+    public void test_switch_order() {
+        NioBuffer buffer = new NioBuffer(ByteBuffer.wrap(toBytes(1, 2, 1, 2)));
+
+        assertEquals(0x0102, buffer.getInt2());
+        buffer.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(0x0201, buffer.getInt2());
+    }
+
+    @Test
+    public void test_bulk_arrays_direct() {
+        ByteBuffer direct = ByteBuffer.allocateDirect(16).order(ByteOrder.LITTLE_ENDIAN);
+        NioBuffer writer = new NioBuffer(direct);
+        writer.putInt4s(new int[] { 7, -1 }, 0, 2);
+        writer.putInt8s(new long[] { 1L << 40 }, 0, 1);
+
+        NioBuffer reader = new NioBuffer(direct);
+        int[] ints = new int[2];
+        long[] longs = new long[1];
+        reader.getInt4s(ints, 0, 2);
+        reader.getInt8s(longs, 0, 1);
+
+        assertArrayEquals(new int[] { 7, -1 }, ints);
+        assertArrayEquals(new long[] { 1L << 40 }, longs);
+        assertEquals(7, direct.get(0));
+        assertEquals(0, direct.position());
+    }
+
+    @Test
+    public void test_bulk_range_checked_before_moving() {
+        NioBuffer buffer = new NioBuffer(ByteBuffer.allocate(16));
+
+        try { buffer.getInt4s(new int[2], 1, 2); fail(); } catch (IndexOutOfBoundsException expected) { }
+        try { buffer.putInt8s(new long[1], 0, 2); fail(); } catch (IndexOutOfBoundsException expected) { }
+        assertEquals(0, buffer.getPosition());
+    }
+
+    @Test
+    public void test_reset_within_bytes() {
+        ByteBuffer bb = ByteBuffer.allocateDirect(8);
+        bb.putInt(0x01020304).putInt(0x05060708).flip();
+
+        NioBuffer buffer = new NioBuffer(bb);
+        buffer.reset(4, 4);
+        buffer.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(0x0605, buffer.getInt2());
+        assertEquals(0x0807, buffer.getUInt2(2));
+        assertEquals(2, buffer.getPosition());
+        assertEquals(4, buffer.getLimit());
+
+        buffer.reset(0, 2);
+        assertEquals(ByteOrder.BIG_ENDIAN, buffer.getByteOrder());
+        assertEquals(0x0102, buffer.getInt2());
+        try { buffer.getInt1(2); fail(); } catch (IndexOutOfBoundsException expected) { }
+        try { buffer.reset(6, 4); fail(); } catch (IndexOutOfBoundsException expected) { }
+    }
+}
@@ -0,0 +1,135 @@
+package org.bodhi.fbc.impl;
+
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.bodhi.fbc.BinaryReader;
+import org.bodhi.fbc.TraceMode;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.bodhi.fbc.Utils.*;
+
+public class SharedBytesTest {
+
+    @Test
+    public void test_cursors_are_independent() {
+        SharedBytes shared = SharedBytes.wrap(toBytes(9, 0, 1, 0, 2, 9), 1, 4, ByteOrder.BIG_ENDIAN);
+        BinaryBuffer first = shared.cursor();
+        BinaryBuffer second = shared.cursor();
+
+        assertEquals(1, first.getInt2());
+        second.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(0x0100, second.getInt2());
+
+        assertEquals(2, first.getInt2());
+        assertEquals(0, first.available());
+        assertEquals(2, second.getPosition());
+    }
+
+    @Test
+    public void test_cursor_stays_in_range() throws Exception {
+        SharedBytes shared = SharedBytes.wrap(toBytes(9, 1, 2, 3, 9, 9, 9, 9), 1, 3, ByteOrder.BIG_ENDIAN);
+        BinaryBuffer cursor = shared.cursor();
+
+        assertEquals(1, cursor.getInt1());
+        cursor.clear();
+        assertEquals(0, cursor.getPosition());
+        assertEquals(1, cursor.getInt1());
+
+        try { cursor.getInt4(); fail(); } catch (IndexOutOfBoundsException expected) { }
+        try { cursor.skip(3); fail(); } catch (IndexOutOfBoundsException expected) { }
+        try { cursor.getInt2(2); fail(); } catch (IndexOutOfBoundsException expected) { }
+        try { cursor.getBytes(new byte[3]); fail(); } catch (IndexOutOfBoundsException expected) { }
+        assertEquals(1, cursor.getPosition());
+
+        assertEquals(0x0203, cursor.getInt2());
+        assertEquals(0, cursor.available());
+        try { cursor.getInt1(); fail(); } catch (IndexOutOfBoundsException expected) { }
+    }
+
+    @Test
+    public void test_reader_over_cursor_can_be_reset() throws Exception {
+        SharedBytes shared = SharedBytes.wrap(toBytes(0, 1), 0, 2, ByteOrder.LITTLE_ENDIAN);
+        BinaryReader reader = new BinaryReader(shared.cursor(), StandardCharsets.US_ASCII, TraceMode.FULL);
+        assertEquals(0x0100, reader.getInt2("n"));
+
+        reader.reset(toBytes(9, 2, 0));
+        reader.skip(1);
+        assertEquals(2, reader.getInt2("n"));
+        assertEquals(1, reader.getPosition("n"));
+        assertEquals(0x0100, shared.cursor().getInt2());
+    }
+
+    @Test
+    public void test_copy_is_isolated() {
+        byte[] bytes = toBytes(1, 2);
+        SharedBytes shared = SharedBytes.copyOf(bytes);
+        bytes[0] = 7;
+
+        assertEquals(1, shared.cursor().getInt1());
+    }
+
+    @Test
+    public void test_writes_are_refused() {
+        BinaryBuffer cursor = SharedBytes.copyOf(toBytes(0, 0, 0, 0)).cursor();
+
+        try { cursor.putInt1(1); fail(); } catch (ReadOnlyBufferException expected) { }
+        try { cursor.putInt4(0, 1); fail(); } catch (ReadOnlyBufferException expected) { }
+        try { cursor.putBytes(toBytes(1)); fail(); } catch (ReadOnlyBufferException expected) { }
+        try { cursor.putString("a", 1, StandardCharsets.US_ASCII, (byte) 0); fail(); } catch (ReadOnlyBufferException expected) { }
+        try { cursor.putInt4s(new int[1], 0, 1); fail(); } catch (ReadOnlyBufferException expected) { }
+        try { ((Buffer) cursor).reset(new byte[1]); fail(); } catch (ReadOnlyBufferException expected) { }
+
+        assertEquals(0, cursor.getInt4());
+    }
+
+    // Many threads decode one frame at once, each through its own cursor and reader, with no
+    // locking. Every thread must see the same bytes.
+
+    @Test
+    public void test_concurrent_readers() throws Exception {
+        int count = 4096;
+        Buffer source = new Buffer(count * 4);
+        for (int ii=0; ii<count; ii++) {
+            source.putInt4(ii);
+        }
+        SharedBytes frame = SharedBytes.wrap(source.copyBytes(), 0, count * 4, ByteOrder.BIG_ENDIAN);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> sums = new ArrayList<Future<Long>>();
+
+        try {
+            for (int tt=0; tt<threads; tt++) {
+                sums.add(executor.submit(() -> {
+                    start.await();
+                    long sum = 0;
+                    for (int round=0; round<50; round++) {
+                        BinaryReader reader = new BinaryReader(frame.cursor(), StandardCharsets.US_ASCII, TraceMode.OFF);
+                        for (int ii=0; ii<count; ii++) {
+                            sum += reader.getInt4("n");
+                        }
+                    }
+                    return sum;
+                }));
+            }
+            start.countDown();
+
+            long expected = 50L * count * (count - 1) / 2;
+            for (Future<Long> sum : sums) {
+                assertEquals(expected, sum.get().longValue());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.bodhi.fbc.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import org.bodhi.fbc.BinaryReader;
+import org.bodhi.fbc.TraceMode;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StringCacheTest {
+    private static final Charset ASCII = StandardCharsets.US_ASCII;
+
+    @Test
+    public void test_same_bytes_same_instance() {
+        StringCache cache = new StringCache(4);
+        byte[] bytes = "IBM  XNYSIBM  ".getBytes(ASCII);
+
+        String first = cache.get(bytes, 0, 5, ASCII);
+        String venue = cache.get(bytes, 5, 4, ASCII);
+        String second = cache.get(bytes, 9, 5, ASCII);
+
+        assertEquals("IBM", first);
+        assertEquals("XNYS", venue);
+        assertSame(first, second);
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1.0 / 3, cache.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void test_lru_evicts_least_recently_used() {
+        StringCache cache = new StringCache(2, StringCache.Eviction.LRU);
+        byte[] bytes = "ABC".getBytes(ASCII);
+
+        String a = cache.get(bytes, 0, 1, ASCII);
+        cache.get(bytes, 1, 1, ASCII);
+        cache.get(bytes, 0, 1, ASCII);  // B is now the oldest
+        cache.get(bytes, 2, 1, ASCII);  // evicts B
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertSame(a, cache.get(bytes, 0, 1, ASCII));
+        assertEquals(2, cache.getHits());
+
+        cache.get(bytes, 1, 1, ASCII);
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void test_bounded_stops_caching_when_full() {
+        StringCache cache = new StringCache(1, StringCache.Eviction.BOUNDED);
+        byte[] bytes = "AB".getBytes(ASCII);
+
+        String a = cache.get(bytes, 0, 1, ASCII);
+        String b = cache.get(bytes, 1, 1, ASCII);
+
+        assertEquals("B", b);
+        assertNotSame(b, cache.get(bytes, 1, 1, ASCII));
+        assertSame(a, cache.get(bytes, 0, 1, ASCII));
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    @Test
+    public void test_direct_buffer() {
+        StringCache cache = new StringCache(4);
+        ByteBuffer direct = ByteBuffer.allocateDirect(8);
+        direct.put("EUR EUR ".getBytes(ASCII)).flip();
+
+        String first = cache.get(direct, 0, 4, ASCII);
+
+        assertEquals("EUR", first);
+        assertSame(first, cache.get(direct, 4, 4, ASCII));
+        assertSame(first, cache.get("EUR ".getBytes(ASCII), 0, 4, ASCII));
+    }
+
+    @Test
+    public void test_reader_uses_cache() throws Exception {
+        StringCache cache = new StringCache(16);
+        BinaryReader reader = new BinaryReader("GBP GBP ".getBytes(ASCII), ASCII, TraceMode.OFF);
+        reader.setStringCache(cache);
+
+        String first = reader.getString(4, "Currency");
+
+        assertEquals("GBP", first);
+        assertSame(first, reader.getString(4, "Currency"));
+        assertEquals(1, cache.getHits());
+    }
+}
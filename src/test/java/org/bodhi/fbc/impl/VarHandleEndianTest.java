@@ -0,0 +1,68 @@
+package org.bodhi.fbc.impl;
+
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+// The VarHandle implementations must agree with the byte by byte ones on every value.
+
+public class VarHandleEndianTest {
+
+    @Test
+    public void test_big_endian_matches() {
+        assertSame(new BigEndian(), new VarHandleBigEndian());
+    }
+
+    @Test
+    public void test_little_endian_matches() {
+        assertSame(new LittleEndian(), new VarHandleLittleEndian());
+    }
+
+    private static void assertSame(Endian expected, Endian actual) {
+        Random random = new Random(7);
+        byte[] bytes = new byte[64];
+        random.nextBytes(bytes);
+
+        for (int offset=0; offset + 8 <= bytes.length; offset++) {
+            assertEquals(expected.getUtfChar(bytes, offset), actual.getUtfChar(bytes, offset));
+            assertEquals(expected.getInt2(bytes, offset), actual.getInt2(bytes, offset));
+            assertEquals(expected.getUInt2(bytes, offset), actual.getUInt2(bytes, offset));
+            assertEquals(expected.getInt4(bytes, offset), actual.getInt4(bytes, offset));
+            assertEquals(expected.getInt8(bytes, offset), actual.getInt8(bytes, offset));
+        }
+
+        for (int ii=0; ii<100; ii++) {
+            long value = random.nextLong();
+            int offset = random.nextInt(bytes.length - 8);
+
+            byte[] left = new byte[bytes.length];
+            byte[] right = new byte[bytes.length];
+
+            expected.putUtfChar(left, offset, (char) value);
+            actual.putUtfChar(right, offset, (char) value);
+            assertArrayEquals(left, right);
+
+            expected.putInt2(left, offset, (int) value);
+            actual.putInt2(right, offset, (int) value);
+            assertArrayEquals(left, right);
+
+            expected.putUInt2(left, offset, (int) value);
+            actual.putUInt2(right, offset, (int) value);
+            assertArrayEquals(left, right);
+
+            expected.putInt4(left, offset, (int) value);
+            actual.putInt4(right, offset, (int) value);
+            assertArrayEquals(left, right);
+
+            expected.putInt8(left, offset, value);
+            actual.putInt8(right, offset, value);
+            assertArrayEquals(left, right);
+        }
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void test_bounds_checked() {
+        new VarHandleBigEndian().getInt8(new byte[8], 1);
+    }
+}
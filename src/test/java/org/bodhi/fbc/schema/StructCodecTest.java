@@ -0,0 +1,131 @@
+package org.bodhi.fbc.schema;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import org.bodhi.fbc.BinaryReader;
+import org.bodhi.fbc.BinaryWriter;
+import org.bodhi.fbc.FieldType;
+import org.bodhi.fbc.Trace;
+import org.bodhi.fbc.impl.Buffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.bodhi.fbc.Utils.toBytes;
+
+public class StructCodecTest {
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+    record Quote(@Wire(value = FieldType.STRING, length = 6) String symbol,
+                 @Wire(value = FieldType.BOOL, padAfter = 1) boolean active,
+                 @Wire(value = FieldType.SINT2, count = 2) short[] levels,
+                 @Wire(FieldType.SINT4) int price,
+                 @Wire(FieldType.SINT8) long time) { }
+
+    record Name(@Wire(value = FieldType.STRING, length = 4, fill = 0) String name,
+                @Wire(value = FieldType.BYTES, length = 3) byte[] tag,
+                @Wire(FieldType.UTF_CHAR) char grade) { }
+
+    record Broken(@Wire(FieldType.SINT4) long value, String name) { }
+
+    record Narrow(@Wire(FieldType.SINT8) int value) { }
+
+    record Unsigned(@Wire(FieldType.UINT2) short value) { }
+
+    record Widened(@Wire(FieldType.UINT2) int value, @Wire(FieldType.SINT1) long count) { }
+
+    @Test
+    public void test_layout() {
+        StructCodec<Quote> codec = StructCodec.of(Quote.class, CHARSET);
+
+        assertEquals(24, codec.size());
+        assertEquals(0, codec.offsetOf("symbol"));
+        assertEquals(8, codec.offsetOf("levels"));
+        assertEquals(12, codec.offsetOf("price"));
+        assertEquals(16, codec.offsetOf("time"));
+    }
+
+    @Test
+    public void test_encode_decode() {
+        StructCodec<Quote> codec = StructCodec.of(Quote.class, CHARSET);
+        Quote quote = new Quote("IBM", true, new short[] {1, -2}, 12345, 99L);
+
+        Buffer buffer = new Buffer(codec.size());
+        codec.encode(quote, buffer);
+
+        assertArrayEquals(toBytes('I', 'B', 'M', ' ', ' ', ' ', 1, 0,
+                                  0, 1, 0xff, 0xfe, 0, 0, 0x30, 0x39,
+                                  0, 0, 0, 0, 0, 0, 0, 99),
+                          buffer.copyBytes());
+
+        Quote decoded = codec.decode(new Buffer(buffer.copyBytes()));
+        assertEquals("IBM", decoded.symbol());
+        assertTrue(decoded.active());
+        assertTrue(Arrays.equals(new short[] {1, -2}, decoded.levels()));
+        assertEquals(12345, decoded.price());
+        assertEquals(99L, decoded.time());
+    }
+
+    @Test
+    public void test_debug_mode_traces() throws Exception {
+        StructCodec<Quote> codec = StructCodec.of(Quote.class, CHARSET);
+        Quote quote = new Quote("IBM", false, new short[] {3, 4}, 7, 8L);
+
+        BinaryWriter writer = new BinaryWriter(CHARSET);
+        codec.encode(quote, writer);
+
+        Buffer buffer = new Buffer(codec.size());
+        codec.encode(quote, buffer);
+        assertArrayEquals(buffer.copyBytes(), writer.getBytes());
+
+        BinaryReader reader = new BinaryReader(writer.getBytes(), CHARSET);
+        Quote decoded = codec.decode(reader);
+        assertEquals(7, decoded.price());
+
+        Trace trace = reader.getTrace();
+        assertEquals("levels[1]", trace.getField(10));
+        assertEquals("// SInt4: 7", trace.getComment(12));
+        assertEquals(16, reader.getPosition("time"));
+    }
+
+    // The fast path reads at fixed offsets from the position, which need not be 0.
+
+    @Test
+    public void test_fast_and_debug_paths_agree() throws Exception {
+        StructCodec<Name> codec = StructCodec.of(Name.class, CHARSET);
+        Name name = new Name("ab", new byte[] {1, 2}, 'z');
+
+        Buffer buffer = new Buffer(2 + codec.size());
+        buffer.putInt2(7);
+        codec.encode(name, buffer);
+
+        BinaryWriter writer = new BinaryWriter(CHARSET);
+        writer.putInt2(7);
+        codec.encode(name, writer);
+        assertArrayEquals(toBytes(0, 7, 'a', 'b', 0, 0, 1, 2, 0, 0, 'z'), writer.getBytes());
+        assertArrayEquals(writer.getBytes(), buffer.copyBytes());
+        assertEquals(' ', writer.getPadding());
+
+        Buffer input = new Buffer(buffer.copyBytes());
+        input.skip(2);
+        Name decoded = codec.decode(input);
+        assertEquals("ab", decoded.name());
+        assertArrayEquals(toBytes(1, 2, 0), decoded.tag());
+        assertEquals('z', decoded.grade());
+        assertEquals(0, input.available());
+
+        try { codec.decode(new Buffer(toBytes(1, 2))); fail(); } catch (IndexOutOfBoundsException expected) { }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_bad_schema() {
+        StructCodec.of(Broken.class, CHARSET);
+    }
+
+    @Test
+    public void test_narrow_components_are_refused() {
+        try { StructCodec.of(Narrow.class, CHARSET); fail(); } catch (IllegalArgumentException expected) { }
+        try { StructCodec.of(Unsigned.class, CHARSET); fail(); } catch (IllegalArgumentException expected) { }
+
+        assertEquals(3, StructCodec.of(Widened.class, CHARSET).size());
+    }
+}